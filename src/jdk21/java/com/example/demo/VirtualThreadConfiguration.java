@@ -0,0 +1,40 @@
+package com.example.demo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+/**
+ * Runs every Tomcat request, and the async work Spring MVC hands off (the
+ * NDJSON export), on its own virtual thread instead of a pooled platform
+ * thread, so requests blocked on MySQL no longer use up the worker pool.
+ * The connection pool size is then the only limit on concurrent database
+ * work. Only compiled by the jdk21 profile, and off until started with
+ * {@code -Dspring.threads.virtual.enabled=true}, the property Spring Boot
+ * 3.2 uses.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequests(){
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreads("http-vt-"));
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(){
+        return new TaskExecutorAdapter(virtualThreads("task-vt-"));
+    }
+
+    private static ExecutorService virtualThreads(String prefix){
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.services.BookingCalendar;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The conflict check of one booking against {@code booked} existing
+ * appointments: the stream over every appointment that
+ * {@code createAppointment} used to run and the primitive
+ * {@link BookingCalendar} check {@code SchedulingService} runs now, against
+ * the doctor, patient and room timelines alike. The probe doctor and patient
+ * are known to the calendar but free, so every check walks all three. Run
+ * with {@code -prof gc} to see the bytes allocated per check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConflictCheckBenchmark {
+
+    private static final int PROBES = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int booked;
+
+    private List<Appointment> appointments;
+    private BookingCalendar calendar;
+    private Appointment[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        appointments = Schedules.booked(booked);
+        calendar = new BookingCalendar();
+        for (Appointment appointment : appointments){
+            long start = Appointment.toStartMinute(appointment.getStartsAt());
+            long end = Appointment.toEndMinute(appointment.getFinishesAt());
+            calendar.timeline(calendar.doctor(appointment.getDoctor().getId())).insert(start, end, appointment.getId());
+            calendar.timeline(calendar.patient(appointment.getPatient().getId())).insert(start, end, appointment.getId());
+            calendar.timeline(calendar.room(appointment.getRoom().getRoomName())).insert(start, end, appointment.getId());
+        }
+        calendar.doctor(Schedules.PROBE_ID);
+        calendar.patient(Schedules.PROBE_ID);
+        probes = Schedules.probes(booked, PROBES, 42);
+    }
+
+    @Benchmark
+    public List<Appointment> linearScan(){
+        Appointment probe = nextProbe();
+        return appointments.stream()
+                .filter(e -> e.overlaps(probe))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public boolean calendar(){
+        Appointment probe = nextProbe();
+        long start = Appointment.toStartMinute(probe.getStartsAt());
+        long end = Appointment.toEndMinute(probe.getFinishesAt());
+        return calendar.overlaps(calendar.findDoctor(probe.getDoctor().getId()), start, end)
+                || calendar.overlaps(calendar.findPatient(probe.getPatient().getId()), start, end)
+                || calendar.overlaps(calendar.findRoom(probe.getRoom().getRoomName()), start, end);
+    }
+
+    private Appointment nextProbe(){
+        return probes[next++ & (PROBES - 1)];
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.JacksonConfiguration;
+import com.example.demo.entities.Appointment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Jackson (de)serialization of appointments with the
+ * {@code HH:mm dd/MM/yyyy} format of {@link JacksonConfiguration}, for a
+ * list of {@code size} appointments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JsonBenchmark {
+
+    private static final TypeReference<List<Appointment>> APPOINTMENTS = new TypeReference<List<Appointment>>(){};
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<Appointment> appointments;
+    private String json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new JacksonConfiguration().jackson2ObjectMapperBuilderCustomizer().customize(builder);
+        objectMapper = builder.build();
+        appointments = Schedules.booked(size);
+        json = objectMapper.writeValueAsString(appointments);
+    }
+
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(appointments);
+    }
+
+    @Benchmark
+    public List<Appointment> deserialize() throws JsonProcessingException {
+        return objectMapper.readValue(json, APPOINTMENTS);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.entities.Appointment;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of a single {@link Appointment#overlaps} call, for a pair that
+ * overlaps, one that does not and one in different rooms. The pairs are
+ * drawn from anywhere in a schedule of {@code booked} appointments, so the
+ * larger sizes pay for reaching entities that are no longer in cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OverlapBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int booked;
+
+    private Appointment[] first;
+    private Appointment[] overlapping;
+    private Appointment[] disjoint;
+    private Appointment[] otherRoom;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        List<Appointment> appointments = Schedules.booked(booked);
+        Appointment[] probes = Schedules.probes(booked, PAIRS, 1);
+        first = new Appointment[PAIRS];
+        overlapping = new Appointment[PAIRS];
+        disjoint = new Appointment[PAIRS];
+        otherRoom = new Appointment[PAIRS];
+        Random random = new Random(7);
+        for (int i = 0; i < PAIRS; i++){
+            // stay clear of the last two hours so the next hour is fully booked
+            int index = random.nextInt(booked - 2 * Schedules.ROOMS);
+            first[i] = appointments.get(index);
+            overlapping[i] = probes[i];
+            overlapping[i].setRoom(first[i].getRoom());
+            overlapping[i].setStartsAt(first[i].getStartsAt().plusMinutes(30));
+            overlapping[i].setFinishesAt(first[i].getFinishesAt().plusMinutes(30));
+            disjoint[i] = appointments.get(index + Schedules.ROOMS);
+            otherRoom[i] = appointments.get(index - index % Schedules.ROOMS + (index + 1) % Schedules.ROOMS);
+        }
+    }
+
+    @Benchmark
+    public boolean overlapping(){
+        int i = next++ & (PAIRS - 1);
+        return first[i].overlaps(overlapping[i]);
+    }
+
+    @Benchmark
+    public boolean disjoint(){
+        int i = next++ & (PAIRS - 1);
+        return first[i].overlaps(disjoint[i]);
+    }
+
+    @Benchmark
+    public boolean otherRoom(){
+        int i = next++ & (PAIRS - 1);
+        return first[i].overlaps(otherRoom[i]);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.entities.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic schedules for the benchmarks: back-to-back one hour
+ * appointments spread over a fixed set of rooms, each with its own doctor and
+ * patient, and probe appointments that start on the half hour so each one
+ * overlaps two stored ones in its room. The probes share a saved doctor and
+ * patient, {@link #PROBE_ID}, that has no appointments of its own.
+ */
+final class Schedules {
+
+    static final int ROOMS = 16;
+    static final long PROBE_ID = ROOMS + 1;
+    static final LocalDateTime FIRST = LocalDateTime.of(2030, 1, 7, 0, 0);
+
+    private Schedules(){
+    }
+
+    static List<Appointment> booked(int count){
+        List<Room> rooms = rooms();
+        List<Doctor> doctors = new ArrayList<>(ROOMS);
+        List<Patient> patients = new ArrayList<>(ROOMS);
+        for (int i = 0; i < ROOMS; i++){
+            Doctor doctor = new Doctor("Perla", "Amalia " + i, 24, "p.amalia" + i + "@hospital.accwe");
+            doctor.setId(i + 1);
+            doctors.add(doctor);
+            Patient patient = new Patient("Jose Luis", "Olaya " + i, 37, "j.olaya" + i + "@email.com");
+            patient.setId(i + 1);
+            patients.add(patient);
+        }
+        List<Appointment> appointments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++){
+            LocalDateTime startsAt = FIRST.plusHours(i / ROOMS);
+            Appointment appointment = new Appointment(patients.get(i % ROOMS), doctors.get(i % ROOMS), rooms.get(i % ROOMS), startsAt, startsAt.plusHours(1));
+            appointment.setId(i + 1);
+            appointments.add(appointment);
+        }
+        return appointments;
+    }
+
+    static Appointment[] probes(int booked, int count, long seed){
+        Patient patient = new Patient("Patient", "Probe", 30, "probe@email.com");
+        patient.setId(PROBE_ID);
+        Doctor doctor = new Doctor("Doctor", "Probe", 40, "probe@hospital.accwe");
+        doctor.setId(PROBE_ID);
+        List<Room> rooms = rooms();
+        int hours = Math.max(1, booked / ROOMS);
+        Random random = new Random(seed);
+        Appointment[] probes = new Appointment[count];
+        for (int i = 0; i < count; i++){
+            LocalDateTime startsAt = FIRST.plusHours(random.nextInt(hours)).plusMinutes(30);
+            probes[i] = new Appointment(patient, doctor, rooms.get(random.nextInt(ROOMS)), startsAt, startsAt.plusHours(1));
+        }
+        return probes;
+    }
+
+    private static List<Room> rooms(){
+        List<Room> rooms = new ArrayList<>(ROOMS);
+        for (int i = 0; i < ROOMS; i++){
+            rooms.add(new Room("Room " + i));
+        }
+        return rooms;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Bounded in-process caches for doctor, patient and room lookups by key.
+ * The caches are declared up front so Actuator binds their hit, miss and
+ * eviction counters under the {@code cache.*} metrics.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    public static final String DOCTORS = "doctors";
+    public static final String PATIENTS = "patients";
+    public static final String ROOMS = "rooms";
+
+    @Value("${resources.cache.maximum-size:10000}")
+    long maximumSize;
+
+    @Value("${resources.cache.ttl:10m}")
+    Duration ttl;
+
+    @Bean
+    public CacheManager cacheManager(){
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(DOCTORS, PATIENTS, ROOMS);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+}
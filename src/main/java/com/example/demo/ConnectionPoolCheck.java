@@ -0,0 +1,61 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Startup self-check of the connection pool: borrows one connection, makes
+ * sure it is valid and logs the pool settings with the time it took, so a
+ * misconfigured or unreachable database stops the application before it
+ * takes traffic. Pool gauges (hikaricp.connections.active, idle, pending,
+ * acquire, usage, timeout) are published by Actuator.
+ */
+@Component
+public class ConnectionPoolCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolCheck.class);
+
+    @Autowired
+    DataSource dataSource;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void check(){
+        long started = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()){
+            if (!connection.isValid(1)){
+                throw new IllegalStateException("Database connection is not valid");
+            }
+        } catch (SQLException e){
+            throw new IllegalStateException("Cannot borrow a database connection", e);
+        }
+        long acquiredMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        if (!(dataSource instanceof HikariDataSource)){
+            log.info("Database connection acquired in {} ms", acquiredMillis);
+            return;
+        }
+        HikariDataSource pool = (HikariDataSource) dataSource;
+        log.info("Connection pool {} ready: maximumPoolSize={}, minimumIdle={}, connectionTimeout={} ms, maxLifetime={} ms, first connection in {} ms",
+                pool.getPoolName(), pool.getMaximumPoolSize(), pool.getMinimumIdle(),
+                pool.getConnectionTimeout(), pool.getMaxLifetime(), acquiredMillis);
+        if (pool.getLeakDetectionThreshold() == 0){
+            log.warn("Connection pool {} has leak detection disabled", pool.getPoolName());
+        }
+        if (acquiredMillis > pool.getConnectionTimeout() / 2){
+            log.warn("Connection pool {} needed {} ms for one connection, close to its {} ms timeout",
+                    pool.getPoolName(), acquiredMillis, pool.getConnectionTimeout());
+        }
+    }
+}
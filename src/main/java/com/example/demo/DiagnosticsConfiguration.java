@@ -0,0 +1,46 @@
+package com.example.demo;
+
+import java.time.Duration;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.internal.StatisticsInitiator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.diagnostics.DiagnosticStatistics;
+import com.example.demo.diagnostics.QueryStatisticsEndpoint;
+
+/**
+ * Opt-in query diagnostics ({@code diagnostics.enabled=true}): turns on
+ * Hibernate statistics, publishes them per query on
+ * {@code /actuator/querystats} and logs queries slower than
+ * {@code diagnostics.slow-query-threshold} with the controller method that
+ * ran them. Statistics cost a few counters per statement, so they stay off
+ * unless asked for.
+ */
+@Configuration
+@ConditionalOnProperty(name = "diagnostics.enabled", havingValue = "true")
+public class DiagnosticsConfiguration {
+
+    @Value("${diagnostics.slow-query-threshold:200ms}")
+    Duration slowQueryThreshold;
+
+    @Bean
+    public HibernatePropertiesCustomizer diagnosticStatistics(){
+        return properties -> {
+            properties.put(AvailableSettings.GENERATE_STATISTICS, "true");
+            properties.put(StatisticsInitiator.STATS_BUILDER, DiagnosticStatistics.factory(slowQueryThreshold.toMillis()));
+        };
+    }
+
+    @Bean
+    public QueryStatisticsEndpoint queryStatisticsEndpoint(EntityManagerFactory entityManagerFactory){
+        return new QueryStatisticsEndpoint(entityManagerFactory.unwrap(SessionFactory.class));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the id sequences of doctors, patients and appointments past the ids
+ * already stored. Those rows got their ids from the shared
+ * {@code hibernate_sequence}, while {@code ddl-auto=update} creates each
+ * per-entity sequence starting at 1, so new inserts would reuse them.
+ *
+ * Only databases without native sequences (MySQL) back a sequence with a
+ * one-row {@code next_val} table; elsewhere there is nothing to seed. The
+ * update only ever raises {@code next_val}, so it is safe on every start.
+ * Runs once the schema is updated and before the server takes requests.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequences {
+
+    private static final Logger log = LoggerFactory.getLogger(IdSequences.class);
+
+    // sequence table -> table whose ids it hands out
+    static final Map<String, String> SEQUENCES = new LinkedHashMap<>();
+    static {
+        SEQUENCES.put("doctor_seq", "doctors");
+        SEQUENCES.put("patient_seq", "patient");
+        SEQUENCES.put("appointment_seq", "appointment");
+    }
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void seed(){
+        SEQUENCES.forEach(this::seed);
+    }
+
+    /**
+     * Sets {@code next_val} of the sequence table to {@code max(id) + 1} of the
+     * entity table when it is not already past it.
+     * @return whether the sequence was moved
+     */
+    boolean seed(String sequenceTable, String entityTable){
+        if (!isTable(sequenceTable)){
+            return false;
+        }
+        Long max = jdbcTemplate.queryForObject("select max(id) from " + entityTable, Long.class);
+        if (max == null){
+            return false;
+        }
+        int updated = jdbcTemplate.update("update " + sequenceTable + " set next_val = ? where next_val <= ?", max + 1, max);
+        if (updated > 0){
+            log.info("Sequence {} moved to {}, past the ids stored in {}", sequenceTable, max + 1, entityTable);
+        }
+        return updated > 0;
+    }
+
+    private boolean isTable(String name){
+        return Boolean.TRUE.equals(jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String candidate : new String[]{name, name.toUpperCase()}){
+                try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, candidate, new String[]{"TABLE"})){
+                    if (tables.next()){
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+}
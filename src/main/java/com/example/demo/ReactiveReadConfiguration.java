@@ -0,0 +1,107 @@
+package com.example.demo;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.example.demo.reactive.ReactiveAppointmentRepository;
+import com.example.demo.reactive.ReactiveReadServer;
+import com.example.demo.reactive.ReactiveResourceRepository;
+import com.example.demo.reactive.ReadHandlers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking read path ({@code reactive.server.enabled=true}): GET
+ * /api/appointments, /api/doctors, /api/patients and /api/rooms served by
+ * WebFlux over R2DBC on {@code reactive.server.port}, for clients such as
+ * schedule displays that keep thousands of connections open. Writes stay
+ * on the servlet endpoints.
+ *
+ * The R2DBC pool is built from the {@code spring.r2dbc.*} properties but not
+ * published as a bean, so JDBC and JPA stay configured as before.
+ */
+@Configuration
+@ConditionalOnProperty(name = "reactive.server.enabled", havingValue = "true")
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class ReactiveReadConfiguration {
+
+    @Value("${reactive.server.port:8081}")
+    int port;
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(R2dbcProperties properties){
+        ConnectionFactoryBuilder connectionFactory = ConnectionFactoryBuilder.withUrl(properties.getUrl());
+        if (properties.getUsername() != null){
+            connectionFactory.username(properties.getUsername());
+        }
+        if (properties.getPassword() != null){
+            connectionFactory.password(properties.getPassword());
+        }
+        R2dbcProperties.Pool pool = properties.getPool();
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory.build())
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public ReadHandlers readHandlers(DatabaseClient reactiveDatabaseClient){
+        return new ReadHandlers(new ReactiveAppointmentRepository(reactiveDatabaseClient), new ReactiveResourceRepository(reactiveDatabaseClient));
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> readRoutes(ReadHandlers handlers){
+        return RouterFunctions.route()
+                .GET("/api/appointments", deferred(handlers::appointments))
+                .GET("/api/doctors", deferred(handlers::doctors))
+                .GET("/api/patients", deferred(handlers::patients))
+                .GET("/api/rooms", deferred(handlers::rooms))
+                .onError(IllegalArgumentException.class, (e, request) -> ServerResponse.badRequest().build())
+                .build();
+    }
+
+    @Bean
+    public ReactiveReadServer reactiveReadServer(RouterFunction<ServerResponse> readRoutes, ObjectMapper objectMapper){
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+        return new ReactiveReadServer(RouterFunctions.toHttpHandler(readRoutes, strategies), port);
+    }
+
+    // handlers reject parameters by throwing before they return, which onError only sees inside the Mono
+    private static HandlerFunction<ServerResponse> deferred(HandlerFunction<ServerResponse> handler){
+        return request -> Mono.defer(() -> handler.handle(request));
+    }
+
+    @PreDestroy
+    void closeConnectionPool(){
+        if (connectionPool != null){
+            connectionPool.dispose();
+        }
+    }
+}
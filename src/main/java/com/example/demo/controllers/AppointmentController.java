@@ -2,98 +2,194 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
-
-import java.util.ArrayList;
+import com.example.demo.dto.AppointmentView;
+import com.example.demo.dto.BookingResult;
+import com.example.demo.dto.FreeSlot;
+import com.example.demo.services.AppointmentExporter;
+import com.example.demo.services.BookingMetrics;
+import com.example.demo.services.AppointmentQueryCache;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
 @RequestMapping("/api")
 public class AppointmentController {
 
+    static final int MAX_BATCH_SIZE = 1000;
+    static final int DEFAULT_SLOTS = 10;
+
     @Autowired
     AppointmentRepository appointmentRepository;
 
+    @Autowired
+    SchedulingService schedulingService;
+
+    @Autowired
+    AppointmentExporter appointmentExporter;
+
+    @Autowired
+    AppointmentQueryCache queryCache;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
+    @Autowired
+    BookingMetrics bookingMetrics;
+
     @GetMapping("/appointments")
-    public ResponseEntity<List<Appointment>> getAllAppointments(){
-        List<Appointment> appointments = new ArrayList<>();
+    public ResponseEntity<List<AppointmentView>> getAllAppointments(@RequestParam(value = "after", required = false) Long after,
+                                                                    @RequestParam(value = "limit", required = false) Integer limit,
+                                                                    @RequestParam(value = "doctorId", required = false) Long doctorId,
+                                                                    @RequestParam(value = "patientId", required = false) Long patientId,
+                                                                    @RequestParam(value = "room", required = false) String room,
+                                                                    @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+                                                                    @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+                                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (!Keyset.isValid(limit) || (from != null && to != null && !from.isBefore(to))){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        String etag = resourceVersions.etag(ResourceVersions.APPOINTMENTS);
+        if (ETags.matches(ifNoneMatch, etag)){
+            return ETags.notModified(etag);
+        }
 
-        appointmentRepository.findAll().forEach(appointments::add);
+        AppointmentFilter filter = new AppointmentFilter(doctorId, patientId, room, from, to);
+        List<AppointmentView> appointments = queryCache.listing(filter, after, limit, () -> {
+            if (!filter.isEmpty()){
+                return appointmentRepository.findFiltered(filter, after == null ? 0 : after, Keyset.page(limit));
+            } else if (Keyset.requested(after, limit)){
+                return appointmentRepository.findViewsByIdGreaterThan(after == null ? 0 : after, Keyset.page(limit));
+            }
+            return appointmentRepository.findAllViews();
+        });
 
         if (appointments.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(appointments, HttpStatus.OK);
+        // filtered listings are paged even without after or limit, so a full page points to the next one
+        ResponseEntity<List<AppointmentView>> response = ETags.ok(appointments, etag);
+        if ((!filter.isEmpty() || Keyset.requested(after, limit)) && appointments.size() == Keyset.page(limit).getPageSize()){
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(response.getHeaders());
+            headers.add(HttpHeaders.LINK, Keyset.nextLink(appointments.get(appointments.size() - 1).getId()));
+            return new ResponseEntity<>(appointments, headers, HttpStatus.OK);
+        }
+        return response;
+    }
+
+    @GetMapping(value = "/appointments", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAppointments(){
+        StreamingResponseBody body = appointmentExporter::writeNdjson;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
     }
 
     @GetMapping("/appointments/{id}")
-    public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id){
-        Optional<Appointment> appointment = appointmentRepository.findById(id);
+    public ResponseEntity<AppointmentView> getAppointmentById(@PathVariable("id") long id,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Optional<AppointmentView> appointment = queryCache.view(id, () -> appointmentRepository.findViewById(id));
 
         if (appointment.isPresent()){
-            return new ResponseEntity<>(appointment.get(),HttpStatus.OK);
+            String etag = ETags.of(id, appointment.get().getVersion());
+            if (ETags.matches(ifNoneMatch, etag)){
+                return ETags.notModified(etag);
+            }
+            return ETags.ok(appointment.get(), etag);
         }else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
 
+    @GetMapping("/availability")
+    public ResponseEntity<List<FreeSlot>> getAvailability(@RequestParam(value = "doctorId", required = false) Long doctorId,
+                                                          @RequestParam(value = "room", required = false) String room,
+                                                          @RequestParam(value = "from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+                                                          @RequestParam(value = "to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+                                                          @RequestParam(value = "duration") int duration,
+                                                          @RequestParam(value = "limit", required = false) Integer limit){
+        if ((doctorId == null && room == null) || !from.isBefore(to) || duration <= 0 || !Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<FreeSlot> slots = schedulingService.findFreeSlots(doctorId, room, from, to, Duration.ofMinutes(duration),
+                limit == null ? DEFAULT_SLOTS : Math.min(limit, Keyset.MAX_LIMIT));
+
+        if (slots.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
     @PostMapping("/appointment")
     public ResponseEntity<List<Appointment>> createAppointment(@RequestBody Appointment appointment){
-        if (appointment.getStartsAt().isAfter(appointment.getFinishesAt()) || appointment.getStartsAt().isEqual(appointment.getFinishesAt()))
+        if (appointment.getStartsAt().isAfter(appointment.getFinishesAt()) || appointment.getStartsAt().isEqual(appointment.getFinishesAt())){
+            bookingMetrics.badRequest();
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        List<Appointment> appointments = new ArrayList<>(appointmentRepository.findAll());
-
-        if(!appointments.isEmpty()){
-            List<Appointment> appointmentsSameParams = appointments.stream()
-                    .filter(e -> e.getDoctor().getId() == appointment.getDoctor().getId() ||
-                            e.getPatient().getId() == appointment.getPatient().getId() ||
-                            e.getRoom().getRoomName().equals(appointment.getRoom().getRoomName()))
-                    .collect(Collectors.toList());
-            if(!appointmentsSameParams.isEmpty()){
-                for (Appointment appointmentElem : appointmentsSameParams){
-                    if(appointmentElem.overlaps(appointment))
-                        return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
-                }
-            }
+        if (!schedulingService.book(appointment).isPresent()){
+            bookingMetrics.conflict();
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
         }
-        appointmentRepository.save(appointment);
+        bookingMetrics.booked();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    @PostMapping("/appointments/batch")
+    public ResponseEntity<List<BookingResult>> createAppointments(@RequestBody List<Appointment> appointments){
+        if (appointments.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (appointments.size() > MAX_BATCH_SIZE){
+            return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        List<BookingResult> results = schedulingService.bookAll(appointments);
+        bookingMetrics.batch(results);
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
 
     @DeleteMapping("/appointments/{id}")
     public ResponseEntity<HttpStatus> deleteAppointment(@PathVariable("id") long id){
 
-        Optional<Appointment> appointment = appointmentRepository.findById(id);
-
-        if (!appointment.isPresent()){
+        if (!schedulingService.cancel(id)){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        appointmentRepository.deleteById(id);
-
         return new ResponseEntity<>(HttpStatus.OK);
-        
     }
 
     @DeleteMapping("/appointments")
     public ResponseEntity<HttpStatus> deleteAllAppointments(){
-        appointmentRepository.deleteAll();
+        schedulingService.cancelAll();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -2,11 +2,14 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Doctor;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +19,8 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -26,51 +31,85 @@ public class DoctorController {
     @Autowired
     DoctorRepository doctorRepository;
 
+    @Autowired
+    SchedulingService schedulingService;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
     @GetMapping("/doctors")
-    public ResponseEntity<List<Doctor>> getAllDoctors(){
-        List<Doctor> doctors = new ArrayList<>();
+    public ResponseEntity<List<Doctor>> getAllDoctors(@RequestParam(value = "after", required = false) Long after,
+                                                      @RequestParam(value = "limit", required = false) Integer limit,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (!Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        doctorRepository.findAll().forEach(doctors::add);
+        String etag = resourceVersions.etag(ResourceVersions.DOCTORS);
+        if (ETags.matches(ifNoneMatch, etag)){
+            return ETags.notModified(etag);
+        }
+
+        List<Doctor> doctors = Keyset.requested(after, limit)
+                ? doctorRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, Keyset.page(limit))
+                : doctorRepository.findAll();
 
         if (doctors.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(doctors, HttpStatus.OK);
+        return ETags.ok(doctors, etag);
     }
 
     @GetMapping("/doctors/{id}")
-    public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id){
-        Optional<Doctor> doctor = doctorRepository.findById(id);
+    public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Optional<Doctor> doctor = doctorRepository.findCachedById(id);
         if (! doctor.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        return new ResponseEntity<>(doctor.get(),HttpStatus.OK);
+        String etag = ETags.of(id, doctor.get().getVersion());
+        if (ETags.matches(ifNoneMatch, etag)){
+            return ETags.notModified(etag);
+        }
+        return ETags.ok(doctor.get(), etag);
     }
 
     @PostMapping("/doctor")
     public ResponseEntity<Doctor> createDoctor(@RequestBody Doctor doc){
         Doctor d = new Doctor(doc.getFirstName(), doc.getLastName(), doc.getAge(), doc.getEmail());
         doctorRepository.save(d);
+        resourceVersions.changed(ResourceVersions.DOCTORS);
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    /**
+     * Deletes one doctor, but never its bookings: 409 while an appointment or
+     * recurring series still references it. Cancel those first, or use
+     * {@link #deleteAllDoctors()}.
+     */
     @DeleteMapping("/doctors/{id}")
     public ResponseEntity<HttpStatus> deleteDoctor(@PathVariable("id") long id){
-        Optional<Doctor> doctor = doctorRepository.findById(id);
-
-        if (! doctor.isPresent()){
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        try {
+            if (! schedulingService.removeDoctor(id)){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+        } catch (DataIntegrityViolationException e){
+            // still referenced by appointments or series
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
 
-        doctorRepository.deleteById(id);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * Deletes every doctor together with every appointment and recurring series
+     * that references one. Unlike {@link #deleteDoctor}, it never answers 409.
+     */
     @DeleteMapping("/doctors")
     public ResponseEntity<HttpStatus> deleteAllDoctors(){
-        doctorRepository.deleteAll();
+        schedulingService.removeAllDoctors();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
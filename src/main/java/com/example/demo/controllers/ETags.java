@@ -0,0 +1,46 @@
+package com.example.demo.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Conditional GET support shared by the read endpoints. Tags are compared
+ * before anything is serialized, so a match costs no response body.
+ */
+final class ETags {
+
+    private ETags(){
+    }
+
+    static String of(Object id, long version){
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    // If-None-Match uses the weak comparison, so W/ prefixes are ignored
+    static boolean matches(String ifNoneMatch, String etag){
+        if (ifNoneMatch == null || etag == null){
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")){
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")){
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static <T> ResponseEntity<T> notModified(String etag){
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    static <T> ResponseEntity<T> ok(T body, String etag){
+        if (etag == null){
+            return new ResponseEntity<>(body, HttpStatus.OK);
+        }
+        return ResponseEntity.ok().eTag(etag).body(body);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.controllers;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Shared limits for the {@code ?after=&limit=} keyset pagination of the list
+ * endpoints. Pages are always the first page after the cursor, so the database
+ * seeks on the primary key instead of skipping an offset. A full page
+ * carries a {@code Link: <...>; rel="next"} header with the cursor of the
+ * following one.
+ */
+public final class Keyset {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private Keyset(){
+    }
+
+    static boolean requested(Object after, Integer limit){
+        return after != null || limit != null;
+    }
+
+    static boolean isValid(Integer limit){
+        return limit == null || limit > 0;
+    }
+
+    static Pageable page(Integer limit){
+        return PageRequest.of(0, limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT));
+    }
+
+    // The current request with after moved past the last row of the page
+    static String nextLink(Object last){
+        return "<" + ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("after", last).toUriString() + ">; rel=\"next\"";
+    }
+}
@@ -3,11 +3,14 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Patient;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +20,8 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -27,48 +32,83 @@ public class PatientController {
     @Autowired
     PatientRepository patientRepository;
 
+    @Autowired
+    SchedulingService schedulingService;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
     @GetMapping("/patients")
-    public ResponseEntity<List<Patient>> getAllPatients(){
-        List<Patient> patients = new ArrayList<>();
+    public ResponseEntity<List<Patient>> getAllPatients(@RequestParam(value = "after", required = false) Long after,
+                                                        @RequestParam(value = "limit", required = false) Integer limit,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (!Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        patientRepository.findAll().forEach(patients::add);
+        String etag = resourceVersions.etag(ResourceVersions.PATIENTS);
+        if (ETags.matches(ifNoneMatch, etag)){
+            return ETags.notModified(etag);
+        }
+
+        List<Patient> patients = Keyset.requested(after, limit)
+                ? patientRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, Keyset.page(limit))
+                : patientRepository.findAll();
 
         if (patients.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(patients, HttpStatus.OK);
+        return ETags.ok(patients, etag);
     }
 
     @GetMapping("/patients/{id}")
-    public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id){
-        Optional<Patient> patient = patientRepository.findById(id);
+    public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Optional<Patient> patient = patientRepository.findCachedById(id);
         if (! patient.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(patient.get(),HttpStatus.OK);
+        String etag = ETags.of(id, patient.get().getVersion());
+        if (ETags.matches(ifNoneMatch, etag)){
+            return ETags.notModified(etag);
+        }
+        return ETags.ok(patient.get(), etag);
     }
 
     @PostMapping("/patient")
     public ResponseEntity<Patient> createPatient(@RequestBody Patient pat){
         Patient d = new Patient(pat.getFirstName(), pat.getLastName(), pat.getAge(), pat.getEmail());
         patientRepository.save(d);
+        resourceVersions.changed(ResourceVersions.PATIENTS);
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    /**
+     * Deletes one patient, but never its bookings: 409 while an appointment or
+     * recurring series still references it. Cancel those first, or use
+     * {@link #deleteAllPatients()}.
+     */
     @DeleteMapping("/patients/{id}")
     public ResponseEntity<HttpStatus> deletePatient(@PathVariable("id") long id){
-        Optional<Patient> patient = patientRepository.findById(id);
-        if (! patient.isPresent()){
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        try {
+            if (! schedulingService.removePatient(id)){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+        } catch (DataIntegrityViolationException e){
+            // still referenced by appointments or series
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-        patientRepository.deleteById(id);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * Deletes every patient together with every appointment and recurring series
+     * that references one. Unlike {@link #deletePatient}, it never answers 409.
+     */
     @DeleteMapping("/patients")
     public ResponseEntity<HttpStatus> deleteAllPatients(){
-        patientRepository.deleteAll();
+        schedulingService.removeAllPatients();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
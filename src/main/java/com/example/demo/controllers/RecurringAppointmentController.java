@@ -0,0 +1,109 @@
+package com.example.demo.controllers;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.BookingMetrics;
+import com.example.demo.services.SchedulingService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api")
+public class RecurringAppointmentController {
+
+    @Autowired
+    RecurringAppointmentRepository recurringAppointmentRepository;
+
+    @Autowired
+    SchedulingService schedulingService;
+
+    @Autowired
+    BookingMetrics bookingMetrics;
+
+    @GetMapping("/recurring-appointments")
+    public ResponseEntity<List<RecurringAppointment>> getAllRecurringAppointments(){
+        List<RecurringAppointment> series = recurringAppointmentRepository.findAll();
+
+        if (series.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(series, HttpStatus.OK);
+    }
+
+    @GetMapping("/recurring-appointments/{id}")
+    public ResponseEntity<RecurringAppointment> getRecurringAppointmentById(@PathVariable("id") long id){
+        Optional<RecurringAppointment> series = recurringAppointmentRepository.findById(id);
+
+        if (series.isPresent()){
+            return new ResponseEntity<>(series.get(), HttpStatus.OK);
+        }else {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    // Only the occurrences within [from, to) are expanded
+    @GetMapping("/recurring-appointments/{id}/occurrences")
+    public ResponseEntity<List<Appointment>> getOccurrences(@PathVariable("id") long id,
+                                                            @RequestParam(value = "from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+                                                            @RequestParam(value = "to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to){
+        if (!from.isBefore(to)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Optional<RecurringAppointment> series = recurringAppointmentRepository.findById(id);
+        if (!series.isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        List<Appointment> occurrences = series.get().occurrencesWithin(from, to);
+        if (occurrences.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(occurrences, HttpStatus.OK);
+    }
+
+    @PostMapping("/recurring-appointment")
+    public ResponseEntity<RecurringAppointment> createRecurringAppointment(@RequestBody RecurringAppointment series){
+        if (SchedulingService.validate(series) != null){
+            bookingMetrics.seriesBadRequest();
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Optional<RecurringAppointment> saved = schedulingService.bookSeries(series);
+        if (!saved.isPresent()){
+            bookingMetrics.seriesConflict();
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        }
+        bookingMetrics.seriesBooked();
+        return new ResponseEntity<>(saved.get(), HttpStatus.OK);
+    }
+
+    @DeleteMapping("/recurring-appointments/{id}")
+    public ResponseEntity<HttpStatus> deleteRecurringAppointment(@PathVariable("id") long id){
+
+        if (!schedulingService.cancelSeries(id)){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+}
@@ -3,11 +3,14 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Room;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +20,8 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -27,48 +32,83 @@ public class RoomController {
     @Autowired
     RoomRepository roomRepository;
 
+    @Autowired
+    SchedulingService schedulingService;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
     @GetMapping("/rooms")
-    public ResponseEntity<List<Room>> getAllRooms(){
-        List<Room> rooms = new ArrayList<>();
+    public ResponseEntity<List<Room>> getAllRooms(@RequestParam(value = "after", required = false) String after,
+                                                  @RequestParam(value = "limit", required = false) Integer limit,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        if (!Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        roomRepository.findAll().forEach(rooms::add);
+        String etag = resourceVersions.etag(ResourceVersions.ROOMS);
+        if (ETags.matches(ifNoneMatch, etag)){
+            return ETags.notModified(etag);
+        }
+
+        List<Room> rooms = Keyset.requested(after, limit)
+                ? roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc(after == null ? "" : after, Keyset.page(limit))
+                : roomRepository.findAll();
 
         if (rooms.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
 
-        return new ResponseEntity<>(rooms, HttpStatus.OK);
+        return ETags.ok(rooms, etag);
     }
 
     @GetMapping("/rooms/{roomName}")
-    public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
+    public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        Optional<Room> room = roomRepository.findCachedByRoomName(roomName);
         if (!room.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(room.get(), HttpStatus.OK);
+        String etag = ETags.of(roomName, room.get().getVersion());
+        if (ETags.matches(ifNoneMatch, etag)){
+            return ETags.notModified(etag);
+        }
+        return ETags.ok(room.get(), etag);
     }
 
     @PostMapping("/room")
     public ResponseEntity<Room> createRoom(@RequestBody Room room){
         Room tmp = new Room(room.getRoomName());
         roomRepository.save(tmp);
+        resourceVersions.changed(ResourceVersions.ROOMS);
         return new ResponseEntity<>(tmp, HttpStatus.CREATED);
     }
 
+    /**
+     * Deletes one room, but never its bookings: 409 while an appointment or
+     * recurring series still references it. Cancel those first, or use
+     * {@link #deleteAllRooms()}.
+     */
     @DeleteMapping("/rooms/{roomName}")
     public ResponseEntity<HttpStatus> deleteRoom(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
-        if (! room.isPresent()){
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        try {
+            if (! schedulingService.removeRoom(roomName)){
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+        } catch (DataIntegrityViolationException e){
+            // still referenced by appointments or series
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-        roomRepository.deleteByRoomName(roomName);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * Deletes every room together with every appointment and recurring series
+     * that references one. Unlike {@link #deleteRoom}, it never answers 409.
+     */
     @DeleteMapping("/rooms")
     public ResponseEntity<HttpStatus> deleteAllRooms(){
-        roomRepository.deleteAll();
+        schedulingService.removeAllRooms();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
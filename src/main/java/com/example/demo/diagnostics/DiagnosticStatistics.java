@@ -0,0 +1,72 @@
+package com.example.demo.diagnostics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Hibernate statistics that also remember which controller methods ran each
+ * query and log every execution slower than the threshold together with the
+ * controller method of the request it ran in.
+ */
+public class DiagnosticStatistics extends StatisticsImpl {
+
+    private static final Logger log = LoggerFactory.getLogger(DiagnosticStatistics.class);
+
+    static final String NO_REQUEST = "(no request)";
+
+    private final long slowQueryMillis;
+    private final Map<String, Set<String>> origins = new ConcurrentHashMap<>();
+
+    public DiagnosticStatistics(SessionFactoryImplementor sessionFactory, long slowQueryMillis){
+        super(sessionFactory);
+        this.slowQueryMillis = slowQueryMillis;
+    }
+
+    public static StatisticsFactory factory(long slowQueryMillis){
+        return sessionFactory -> new DiagnosticStatistics(sessionFactory, slowQueryMillis);
+    }
+
+    @Override
+    public void queryExecuted(String query, int rows, long time){
+        super.queryExecuted(query, rows, time);
+        String origin = origin();
+        origins.computeIfAbsent(query, k -> ConcurrentHashMap.newKeySet()).add(origin);
+        if (time >= slowQueryMillis){
+            log.warn("Slow query from {}: {} ms, {} rows: {}", origin, time, rows, query);
+        }
+    }
+
+    public Set<String> getOrigins(String query){
+        return origins.getOrDefault(query, Collections.emptySet());
+    }
+
+    @Override
+    public void clear(){
+        super.clear();
+        origins.clear();
+    }
+
+    // the dispatcher keeps the handler on the request bound to this thread
+    private static String origin(){
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        Object handler = request == null ? null
+                : request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (!(handler instanceof HandlerMethod)){
+            return NO_REQUEST;
+        }
+        HandlerMethod method = (HandlerMethod) handler;
+        return method.getBeanType().getSimpleName() + "#" + method.getMethod().getName();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * {@code /actuator/querystats}: session-wide Hibernate counters and, per
+ * query, its executions, rows and times in milliseconds, most expensive in
+ * total first. A DELETE starts the counts over.
+ */
+@Endpoint(id = "querystats")
+public class QueryStatisticsEndpoint {
+
+    private final SessionFactory sessionFactory;
+
+    public QueryStatisticsEndpoint(SessionFactory sessionFactory){
+        this.sessionFactory = sessionFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Object> statistics(){
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startTime", statistics.getStartTime());
+        result.put("transactions", statistics.getTransactionCount());
+        result.put("preparedStatements", statistics.getPrepareStatementCount());
+        result.put("queryExecutions", statistics.getQueryExecutionCount());
+        result.put("slowestQuery", statistics.getQueryExecutionMaxTimeQueryString());
+        result.put("slowestQueryTime", statistics.getQueryExecutionMaxTime());
+        result.put("entityLoads", statistics.getEntityLoadCount());
+        result.put("entityFetches", statistics.getEntityFetchCount());
+        result.put("collectionFetches", statistics.getCollectionFetchCount());
+        result.put("queries", queries(statistics));
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset(){
+        sessionFactory.getStatistics().clear();
+    }
+
+    private static List<QueryDescriptor> queries(Statistics statistics){
+        List<QueryDescriptor> queries = new ArrayList<>();
+        for (String query : statistics.getQueries()){
+            Set<String> origins = statistics instanceof DiagnosticStatistics
+                    ? ((DiagnosticStatistics) statistics).getOrigins(query) : null;
+            queries.add(new QueryDescriptor(query, statistics.getQueryStatistics(query), origins));
+        }
+        queries.sort(Comparator.comparingLong(QueryDescriptor::getTotalTime).reversed());
+        return queries;
+    }
+
+    public static final class QueryDescriptor {
+
+        private final String query;
+        private final long executions;
+        private final long rows;
+        private final long averageTime;
+        private final long maxTime;
+        private final long totalTime;
+        private final Set<String> origins;
+
+        QueryDescriptor(String query, QueryStatistics statistics, Set<String> origins){
+            this.query = query;
+            this.executions = statistics.getExecutionCount();
+            this.rows = statistics.getExecutionRowCount();
+            this.averageTime = statistics.getExecutionAvgTime();
+            this.maxTime = statistics.getExecutionMaxTime();
+            this.totalTime = statistics.getExecutionTotalTime();
+            this.origins = origins;
+        }
+
+        public String getQuery(){
+            return this.query;
+        }
+
+        public long getExecutions(){
+            return this.executions;
+        }
+
+        public long getRows(){
+            return this.rows;
+        }
+
+        public long getAverageTime(){
+            return this.averageTime;
+        }
+
+        public long getMaxTime(){
+            return this.maxTime;
+        }
+
+        public long getTotalTime(){
+            return this.totalTime;
+        }
+
+        public Set<String> getOrigins(){
+            return this.origins;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.entities.Appointment;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Flat, read-only row for appointment listings. It is built directly by a
+ * constructor query, so no entity is loaded, tracked or dirty-checked.
+ */
+public class AppointmentView {
+
+    private final long id;
+    private final long version;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    private final Long doctorId;
+    private final String doctorFirstName;
+    private final String doctorLastName;
+    private final Long patientId;
+    private final String patientFirstName;
+    private final String patientLastName;
+    private final String roomName;
+
+    public AppointmentView(long id, long version, LocalDateTime startsAt, LocalDateTime finishesAt,
+                           Long doctorId, String doctorFirstName, String doctorLastName,
+                           Long patientId, String patientFirstName, String patientLastName,
+                           String roomName){
+        this.id = id;
+        this.version = version;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+        this.doctorId = doctorId;
+        this.doctorFirstName = doctorFirstName;
+        this.doctorLastName = doctorLastName;
+        this.patientId = patientId;
+        this.patientFirstName = patientFirstName;
+        this.patientLastName = patientLastName;
+        this.roomName = roomName;
+    }
+
+    public static AppointmentView of(Appointment appointment){
+        return new AppointmentView(appointment.getId(), appointment.getVersion(), appointment.getStartsAt(), appointment.getFinishesAt(),
+                appointment.getDoctor() == null ? null : appointment.getDoctor().getId(),
+                appointment.getDoctor() == null ? null : appointment.getDoctor().getFirstName(),
+                appointment.getDoctor() == null ? null : appointment.getDoctor().getLastName(),
+                appointment.getPatient() == null ? null : appointment.getPatient().getId(),
+                appointment.getPatient() == null ? null : appointment.getPatient().getFirstName(),
+                appointment.getPatient() == null ? null : appointment.getPatient().getLastName(),
+                appointment.getRoom() == null ? null : appointment.getRoom().getRoomName());
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    @JsonIgnore
+    public long getVersion(){
+        return this.version;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public String getDoctorFirstName(){
+        return this.doctorFirstName;
+    }
+
+    public String getDoctorLastName(){
+        return this.doctorLastName;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public String getPatientFirstName(){
+        return this.patientFirstName;
+    }
+
+    public String getPatientLastName(){
+        return this.patientLastName;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+}
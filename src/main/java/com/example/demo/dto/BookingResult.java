@@ -0,0 +1,67 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item of a batch booking, reported at the position the item
+ * had in the request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BookingResult {
+
+    public static final String ACCEPTED = "ACCEPTED";
+    public static final String REJECTED = "REJECTED";
+
+    private final int index;
+    private final String status;
+    private final Long id;
+    private final String reason;
+    private final boolean conflict;
+
+    private BookingResult(int index, String status, Long id, String reason, boolean conflict){
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.reason = reason;
+        this.conflict = conflict;
+    }
+
+    public static BookingResult accepted(int index, long id){
+        return new BookingResult(index, ACCEPTED, id, null, false);
+    }
+
+    public static BookingResult rejected(int index, String reason){
+        return new BookingResult(index, REJECTED, null, reason, false);
+    }
+
+    public static BookingResult conflict(int index, String reason){
+        return new BookingResult(index, REJECTED, null, reason, true);
+    }
+
+    public int getIndex(){
+        return this.index;
+    }
+
+    public String getStatus(){
+        return this.status;
+    }
+
+    public Long getId(){
+        return this.id;
+    }
+
+    public String getReason(){
+        return this.reason;
+    }
+
+    @JsonIgnore
+    public boolean isAccepted(){
+        return ACCEPTED.equals(this.status);
+    }
+
+    @JsonIgnore
+    public boolean isConflict(){
+        return this.conflict;
+    }
+}
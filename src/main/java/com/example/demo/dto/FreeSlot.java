@@ -0,0 +1,37 @@
+package com.example.demo.dto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * A gap between the bookings of a doctor and a room, clipped to the searched
+ * window. Any appointment of the requested duration that starts between
+ * {@code startsAt} and {@code finishesAt - duration} can be booked.
+ */
+public class FreeSlot {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    public FreeSlot(LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public long getMinutes(){
+        return Duration.between(this.startsAt, this.finishesAt).toMinutes();
+    }
+}
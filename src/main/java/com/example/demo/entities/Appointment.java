@@ -1,18 +1,33 @@
 package com.example.demo.entities;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.*;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_appointment_doctor_time", columnList = "doctor_id, startsAt, finishesAt"),
+    @Index(name = "idx_appointment_patient_time", columnList = "patient_id, startsAt, finishesAt"),
+    @Index(name = "idx_appointment_room_time", columnList = "room_id, startsAt, finishesAt")
+})
+@NamedEntityGraph(name = Appointment.WITH_RESOURCES, attributeNodes = {
+    @NamedAttributeNode("patient"),
+    @NamedAttributeNode("doctor"),
+    @NamedAttributeNode("room")
+})
 public class Appointment {
 
+    public static final String WITH_RESOURCES = "Appointment.withResources";
+
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="appointment_seq")
+    @SequenceGenerator(name="appointment_seq", sequenceName="appointment_seq", allocationSize=50)
     private long id;
 
 
@@ -34,6 +49,25 @@ public class Appointment {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
     private LocalDateTime finishesAt;
 
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long version;
+
+    // epoch minutes of startsAt and finishesAt, cached against the value they
+    // were computed from so they follow however those fields are set
+    @Transient
+    private long startMinute;
+
+    @Transient
+    private LocalDateTime startMinuteOf;
+
+    @Transient
+    private long endMinute;
+
+    @Transient
+    private LocalDateTime endMinuteOf;
+
     public Appointment(){
         super();
     }
@@ -54,6 +88,10 @@ public class Appointment {
         this.id = id;
     }
     
+    public long getVersion(){
+        return this.version;
+    }
+    
     public LocalDateTime getStartsAt(){
         return this.startsAt;
     }
@@ -89,26 +127,76 @@ public class Appointment {
         this.room = room;
     }
     
-    public boolean overlaps( Appointment appointment){
-        /// True when:
-        // Case 1: A.starts == B.starts
-        // Case 2: A.finishes == B.finishes 
-        // Case 3: A.starts < B.finishes && B.finishes < A.finishes
-        // Case 4: B.starts < A.starts && A.finishes < B.finishes
-        if (appointment.getRoom().getRoomName().equals(this.getRoom().getRoomName())){ 
-            if (this.getStartsAt().equals(appointment.getStartsAt()) || 
-                    appointment.getFinishesAt().equals(this.getFinishesAt())){
-                return true;
-                    }
-            if (appointment.getFinishesAt().isAfter(this.getStartsAt()) && appointment.getFinishesAt().isBefore(this.getFinishesAt())){
-                return true;
-            }
-            if ( appointment.getStartsAt().isAfter(this.getStartsAt()) && appointment.getStartsAt().isBefore(this.getFinishesAt())){
-                return true;
-            }
+    @JsonIgnore
+    public long getStartMinute(){
+        if (this.startMinuteOf != this.startsAt){
+            this.startMinute = toStartMinute(this.startsAt);
+            this.startMinuteOf = this.startsAt;
+        }
+        return this.startMinute;
+    }
+
+    @JsonIgnore
+    public long getEndMinute(){
+        if (this.endMinuteOf != this.finishesAt){
+            this.endMinute = toEndMinute(this.finishesAt);
+            this.endMinuteOf = this.finishesAt;
         }
-        
-        return false;
+        return this.endMinute;
+    }
+
+    /**
+     * True when both appointments need the same doctor, patient or room at
+     * the same time. Appointments are half-open, so one may start the minute
+     * the other finishes. The time check runs first, on the precomputed
+     * epoch minutes, so most pairs are told apart by two long comparisons.
+     */
+    public boolean overlaps(Appointment appointment){
+        return overlapsInTime(appointment) && sharesResource(appointment);
+    }
+
+    public boolean overlapsInTime(Appointment appointment){
+        return overlaps(getStartMinute(), getEndMinute(), appointment.getStartMinute(), appointment.getEndMinute());
+    }
+
+    /**
+     * True when both need the same doctor, patient or room. Doctors and
+     * patients are the same when they are one object or share a saved id.
+     */
+    public boolean sharesResource(Appointment appointment){
+        return sameDoctor(this.doctor, appointment.getDoctor()) || samePatient(this.patient, appointment.getPatient())
+                || sameRoom(this.room, appointment.getRoom());
+    }
+
+    public static boolean overlaps(long start, long end, long otherStart, long otherEnd){
+        return start < otherEnd && otherStart < end;
+    }
+
+    /**
+     * Epoch minute of a start time, rounded down. Bookings are made to the
+     * minute; rounding starts down and ends up keeps a sub-minute booking
+     * occupying every minute it touches.
+     */
+    public static long toStartMinute(LocalDateTime dateTime){
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
     }
 
+    public static long toEndMinute(LocalDateTime dateTime){
+        return -Math.floorDiv(-dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    static boolean sameDoctor(Doctor doctor, Doctor other){
+        return doctor != null && other != null
+                && (doctor == other || (doctor.getId() != 0 && doctor.getId() == other.getId()));
+    }
+
+    static boolean samePatient(Patient patient, Patient other){
+        return patient != null && other != null
+                && (patient == other || (patient.getId() != 0 && patient.getId() == other.getId()));
+    }
+
+    static boolean sameRoom(Room room, Room other){
+        return room != null && other != null
+                && room.getRoomName() != null && room.getRoomName().equals(other.getRoomName());
+    }
 }
@@ -7,7 +7,8 @@ import javax.persistence.*;
 public class Doctor extends Person {
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="doctor_seq")
+    @SequenceGenerator(name="doctor_seq", sequenceName="doctor_seq", allocationSize=50)
     private long id;
  
     public Doctor() {
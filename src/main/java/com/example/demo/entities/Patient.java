@@ -4,12 +4,14 @@ import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
+import javax.persistence.SequenceGenerator;
 
 @Entity
 public class Patient extends Person{
 
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="patient_seq")
+    @SequenceGenerator(name="patient_seq", sequenceName="patient_seq", allocationSize=50)
     private long id;
 
     public Patient(){
@@ -1,6 +1,10 @@
 package com.example.demo.entities;
 
+import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @MappedSuperclass
 public class Person {
@@ -8,6 +12,12 @@ public class Person {
     private String lastName;
     private int age;
     private String email;
+
+    // existing rows start at 0 when the column is added by ddl-auto
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long version;
     
     public Person(){
         super();
@@ -48,4 +58,8 @@ public class Person {
     public void setEmail(String email){
         this.email = email; 
     }
+
+    public long getVersion(){
+        return this.version;
+    }
 }
@@ -0,0 +1,329 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A series of appointments repeating every {@code interval} days or weeks
+ * after the first one, until a date or for a number of occurrences, like an
+ * iCalendar RRULE with FREQ, INTERVAL, UNTIL and COUNT. Only the rule is
+ * stored: occurrences are computed for the window a caller asks about, and
+ * whether any of them touches a window is plain arithmetic on epoch minutes.
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "idx_recurring_doctor_span", columnList = "doctor_id, startsAt, lastFinishesAt"),
+    @Index(name = "idx_recurring_patient_span", columnList = "patient_id, startsAt, lastFinishesAt"),
+    @Index(name = "idx_recurring_room_span", columnList = "room_id, startsAt, lastFinishesAt")
+})
+@NamedEntityGraph(name = RecurringAppointment.WITH_RESOURCES, attributeNodes = {
+    @NamedAttributeNode("patient"),
+    @NamedAttributeNode("doctor"),
+    @NamedAttributeNode("room")
+})
+public class RecurringAppointment {
+
+    public static final String WITH_RESOURCES = "RecurringAppointment.withResources";
+
+    // Caps checked before any date arithmetic, so a series can neither step
+    // past the LocalDateTime range nor make conflict checks loop for long
+    public static final int MAX_OCCURRENCES = 1000;
+    public static final int MAX_SPAN_DAYS = 5 * 366;
+
+    public enum Frequency {
+        DAILY(1), WEEKLY(7);
+
+        private final int days;
+
+        Frequency(int days){
+            this.days = days;
+        }
+
+        public int getDays(){
+            return this.days;
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="recurring_appointment_seq")
+    @SequenceGenerator(name="recurring_appointment_seq", sequenceName="recurring_appointment_seq", allocationSize=50)
+    private long id;
+
+    @ManyToOne(cascade = CascadeType.ALL)
+    @JoinColumn(name = "patient_id", referencedColumnName = "id")
+    private Patient patient;
+
+    @ManyToOne(cascade = CascadeType.ALL)
+    @JoinColumn(name = "doctor_id", referencedColumnName = "id")
+    private Doctor doctor;
+
+    @ManyToOne(cascade = CascadeType.ALL)
+    @JoinColumn(name = "room_id", referencedColumnName = "roomName")
+    private Room room;
+
+    // the first occurrence
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime finishesAt;
+
+    @Enumerated(EnumType.STRING)
+    private Frequency frequency;
+
+    @Column(name = "repeat_interval", nullable = false)
+    private int interval = 1;
+
+    // no occurrence starts after it
+    @Column(name = "repeat_until")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime until;
+
+    @Column(name = "repeat_count")
+    private Integer count;
+
+    // end of the last occurrence, stored for the range queries of the repository
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime lastFinishesAt;
+
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long version;
+
+    public RecurringAppointment(){
+        super();
+    }
+
+    public RecurringAppointment(Patient patient, Doctor doctor, Room room, LocalDateTime startsAt, LocalDateTime finishesAt,
+                                Frequency frequency, int interval, LocalDateTime until, Integer count){
+        this.patient = patient;
+        this.doctor = doctor;
+        this.room = room;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+        this.count = count;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public void setId(long id){
+        this.id = id;
+    }
+
+    public long getVersion(){
+        return this.version;
+    }
+
+    public Patient getPatient(){
+        return this.patient;
+    }
+    public void setPatient(Patient patient){
+        this.patient = patient;
+    }
+
+    public Doctor getDoctor(){
+        return this.doctor;
+    }
+    public void setDoctor(Doctor doctor){
+        this.doctor = doctor;
+    }
+
+    public Room getRoom(){
+        return this.room;
+    }
+    public void setRoom(Room room){
+        this.room = room;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+    public void setStartsAt(LocalDateTime startsAt){
+        this.startsAt = startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+    public void setFinishesAt(LocalDateTime finishesAt){
+        this.finishesAt = finishesAt;
+    }
+
+    public Frequency getFrequency(){
+        return this.frequency;
+    }
+    public void setFrequency(Frequency frequency){
+        this.frequency = frequency;
+    }
+
+    public int getInterval(){
+        return this.interval;
+    }
+    public void setInterval(int interval){
+        this.interval = interval;
+    }
+
+    public LocalDateTime getUntil(){
+        return this.until;
+    }
+    public void setUntil(LocalDateTime until){
+        this.until = until;
+    }
+
+    public Integer getCount(){
+        return this.count;
+    }
+    public void setCount(Integer count){
+        this.count = count;
+    }
+
+    public LocalDateTime getLastFinishesAt(){
+        long occurrences = getOccurrences();
+        return occurrences > 0 ? finishesAt.plusDays((occurrences - 1) * getPeriodDays()) : null;
+    }
+
+    @JsonIgnore
+    public long getPeriodDays(){
+        return (long) this.frequency.getDays() * this.interval;
+    }
+
+    @JsonIgnore
+    public long getPeriodMinutes(){
+        return getPeriodDays() * 24 * 60;
+    }
+
+    /**
+     * Number of occurrences: {@code count}, cut short by {@code until} when
+     * both are set, and 0 when neither is or the count is not positive.
+     */
+    @JsonIgnore
+    public long getOccurrences(){
+        if (this.startsAt == null || this.finishesAt == null || this.frequency == null || this.interval < 1){
+            return 0;
+        }
+        long occurrences = this.count != null ? Math.max(0, this.count) : Long.MAX_VALUE;
+        if (this.until != null){
+            long untilOccurrences = Math.floorDiv(Appointment.toStartMinute(this.until) - Appointment.toStartMinute(this.startsAt), getPeriodMinutes()) + 1;
+            occurrences = Math.min(occurrences, Math.max(0, untilOccurrences));
+        }
+        return occurrences == Long.MAX_VALUE ? 0 : occurrences;
+    }
+
+    /**
+     * The k-th occurrence, counting from 0, as an unsaved appointment with the
+     * resources of the series.
+     */
+    public Appointment occurrence(long index){
+        long days = index * getPeriodDays();
+        return new Appointment(this.patient, this.doctor, this.room, this.startsAt.plusDays(days), this.finishesAt.plusDays(days));
+    }
+
+    /**
+     * Expands only the occurrences sharing at least one minute with [from, to).
+     */
+    public List<Appointment> occurrencesWithin(LocalDateTime from, LocalDateTime to){
+        List<Appointment> occurrences = new ArrayList<>();
+        long count = getOccurrences();
+        if (count == 0){
+            return occurrences;
+        }
+        long period = getPeriodMinutes();
+        long last = lastStartingBefore(getStartMinute(), period, count, Appointment.toEndMinute(to));
+        for (long index = firstEndingAfter(getEndMinute(), period, Appointment.toStartMinute(from)); index <= last; index++){
+            occurrences.add(this.occurrence(index));
+        }
+        return occurrences;
+    }
+
+    /**
+     * True when an occurrence shares at least one minute with the epoch-minute
+     * window [from, to), found without expanding the series.
+     */
+    public boolean occursWithin(long from, long to){
+        long occurrences = getOccurrences();
+        return occurrences > 0 && occursWithin(getStartMinute(), getEndMinute(), getPeriodMinutes(), occurrences, from, to);
+    }
+
+    /**
+     * The same check on a series given as epoch minutes: the first occurrence
+     * [start, end), the period and the number of occurrences.
+     */
+    public static boolean occursWithin(long start, long end, long period, long occurrences, long from, long to){
+        return firstEndingAfter(end, period, from) <= lastStartingBefore(start, period, occurrences, to);
+    }
+
+    // the first occurrence, in epoch minutes
+    @JsonIgnore
+    public long getStartMinute(){
+        return Appointment.toStartMinute(this.startsAt);
+    }
+
+    @JsonIgnore
+    public long getEndMinute(){
+        return Appointment.toEndMinute(this.finishesAt);
+    }
+
+    /**
+     * True when an occurrence needs the same doctor, patient or room as the
+     * appointment at the same time.
+     */
+    public boolean overlaps(Appointment appointment){
+        return occursWithin(appointment.getStartMinute(), appointment.getEndMinute()) && sharesResource(appointment.getDoctor(),
+                appointment.getPatient(), appointment.getRoom());
+    }
+
+    /**
+     * True when an occurrence of each series needs the same resource at the
+     * same time. Only the occurrences of this series within the span of the
+     * other are expanded, each checked against the other in constant time.
+     */
+    public boolean overlaps(RecurringAppointment series){
+        long count = getOccurrences();
+        if (!sharesResource(series.getDoctor(), series.getPatient(), series.getRoom()) || count == 0 || series.getOccurrences() == 0){
+            return false;
+        }
+        long period = getPeriodMinutes();
+        long start = getStartMinute();
+        long end = getEndMinute();
+        long last = lastStartingBefore(start, period, count, Appointment.toEndMinute(series.getLastFinishesAt()));
+        for (long index = firstEndingAfter(end, period, series.getStartMinute()); index <= last; index++){
+            if (series.occursWithin(start + index * period, end + index * period)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean sharesResource(Doctor doctor, Patient patient, Room room){
+        return Appointment.sameDoctor(this.doctor, doctor) || Appointment.samePatient(this.patient, patient)
+                || Appointment.sameRoom(this.room, room);
+    }
+
+    // index of the first occurrence finishing after from
+    private static long firstEndingAfter(long end, long period, long from){
+        return Math.max(0, Math.floorDiv(from - end, period) + 1);
+    }
+
+    // index of the last occurrence starting before to
+    private static long lastStartingBefore(long start, long period, long occurrences, long to){
+        return Math.min(occurrences - 1, -Math.floorDiv(start - to, period) - 1);
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void span(){
+        this.lastFinishesAt = getLastFinishesAt();
+    }
+}
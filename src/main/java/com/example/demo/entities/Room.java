@@ -1,7 +1,11 @@
 package com.example.demo.entities;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
 public class Room {
@@ -9,6 +13,11 @@ public class Room {
     @Id
     private String roomName;
 
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    @JsonIgnore
+    private long version;
+
     public Room(){
         super();
     }
@@ -23,4 +32,8 @@ public class Room {
         return this.roomName;
     }
 
+    public long getVersion(){
+        return this.version;
+    }
+
 }
@@ -0,0 +1,86 @@
+package com.example.demo.reactive;
+
+import com.example.demo.dto.AppointmentView;
+import com.example.demo.repositories.AppointmentFilter;
+
+import java.time.LocalDateTime;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+
+/**
+ * R2DBC counterpart of the view queries of {@code AppointmentRepository}:
+ * the same flat rows, filters and id order, emitted as they are read.
+ */
+public class ReactiveAppointmentRepository {
+
+    private static final String SELECT_VIEW = "select a.id, a.version, a.starts_at, a.finishes_at,"
+            + " d.id as doctor_id, d.first_name as doctor_first_name, d.last_name as doctor_last_name,"
+            + " p.id as patient_id, p.first_name as patient_first_name, p.last_name as patient_last_name,"
+            + " a.room_id from appointment a"
+            + " left join doctors d on d.id = a.doctor_id"
+            + " left join patient p on p.id = a.patient_id";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveAppointmentRepository(DatabaseClient databaseClient){
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * @param limit maximum number of rows, or null for all of them
+     */
+    public Flux<AppointmentView> findViews(AppointmentFilter filter, long after, Integer limit){
+        StringBuilder sql = new StringBuilder(SELECT_VIEW).append(" where a.id > :after");
+        if (filter.getDoctorId() != null){
+            sql.append(" and a.doctor_id = :doctorId");
+        }
+        if (filter.getPatientId() != null){
+            sql.append(" and a.patient_id = :patientId");
+        }
+        if (filter.getRoomName() != null){
+            sql.append(" and a.room_id = :roomName");
+        }
+        if (filter.getFrom() != null){
+            sql.append(" and a.finishes_at > :from");
+        }
+        if (filter.getTo() != null){
+            sql.append(" and a.starts_at < :to");
+        }
+        sql.append(" order by a.id");
+        if (limit != null){
+            sql.append(" limit :limit");
+        }
+
+        DatabaseClient.GenericExecuteSpec query = databaseClient.sql(sql.toString()).bind("after", after);
+        if (filter.getDoctorId() != null){
+            query = query.bind("doctorId", filter.getDoctorId());
+        }
+        if (filter.getPatientId() != null){
+            query = query.bind("patientId", filter.getPatientId());
+        }
+        if (filter.getRoomName() != null){
+            query = query.bind("roomName", filter.getRoomName());
+        }
+        if (filter.getFrom() != null){
+            query = query.bind("from", filter.getFrom());
+        }
+        if (filter.getTo() != null){
+            query = query.bind("to", filter.getTo());
+        }
+        if (limit != null){
+            query = query.bind("limit", limit);
+        }
+        return query.map((row, metadata) -> toView(row)).all();
+    }
+
+    private static AppointmentView toView(Row row){
+        return new AppointmentView(row.get("id", Long.class), row.get("version", Long.class),
+                row.get("starts_at", LocalDateTime.class), row.get("finishes_at", LocalDateTime.class),
+                row.get("doctor_id", Long.class), row.get("doctor_first_name", String.class), row.get("doctor_last_name", String.class),
+                row.get("patient_id", Long.class), row.get("patient_first_name", String.class), row.get("patient_last_name", String.class),
+                row.get("room_id", String.class));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.reactive;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Reactor Netty server for the read routes, running next to the servlet
+ * container on its own port. A handful of event-loop threads serve every
+ * open connection, however long it stays open.
+ */
+public class ReactiveReadServer implements SmartLifecycle {
+
+    private final HttpHandler httpHandler;
+    private final int port;
+    private volatile DisposableServer server;
+
+    public ReactiveReadServer(HttpHandler httpHandler, int port){
+        this.httpHandler = httpHandler;
+        this.port = port;
+    }
+
+    @Override
+    public void start(){
+        server = HttpServer.create()
+                .port(port)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+    }
+
+    @Override
+    public void stop(){
+        DisposableServer running = server;
+        server = null;
+        if (running != null){
+            running.disposeNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning(){
+        return server != null;
+    }
+
+    /**
+     * @return the bound port, which differs from the configured one when that is 0
+     */
+    public int getPort(){
+        return server == null ? port : server.port();
+    }
+}
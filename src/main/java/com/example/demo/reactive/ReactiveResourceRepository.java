@@ -0,0 +1,60 @@
+package com.example.demo.reactive;
+
+import com.example.demo.entities.*;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import io.r2dbc.spi.Row;
+import reactor.core.publisher.Flux;
+
+/**
+ * R2DBC reads of doctors, patients and rooms in key order, mirroring
+ * {@code findAll} and the keyset queries of their JPA repositories. Rows
+ * are mapped to the entity classes so both stacks serialize the same JSON.
+ */
+public class ReactiveResourceRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveResourceRepository(DatabaseClient databaseClient){
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Doctor> findDoctors(long after, Integer limit){
+        return page("select id, first_name, last_name, age, email from doctors where id > :after order by id", after, limit)
+                .map((row, metadata) -> {
+                    Doctor doctor = new Doctor(row.get("first_name", String.class), row.get("last_name", String.class),
+                            age(row), row.get("email", String.class));
+                    doctor.setId(row.get("id", Long.class));
+                    return doctor;
+                }).all();
+    }
+
+    public Flux<Patient> findPatients(long after, Integer limit){
+        return page("select id, first_name, last_name, age, email from patient where id > :after order by id", after, limit)
+                .map((row, metadata) -> {
+                    Patient patient = new Patient(row.get("first_name", String.class), row.get("last_name", String.class),
+                            age(row), row.get("email", String.class));
+                    patient.setId(row.get("id", Long.class));
+                    return patient;
+                }).all();
+    }
+
+    public Flux<Room> findRooms(String after, Integer limit){
+        return page("select room_name from room where room_name > :after order by room_name", after, limit)
+                .map((row, metadata) -> new Room(row.get("room_name", String.class)))
+                .all();
+    }
+
+    private DatabaseClient.GenericExecuteSpec page(String sql, Object after, Integer limit){
+        if (limit == null){
+            return databaseClient.sql(sql).bind("after", after);
+        }
+        return databaseClient.sql(sql + " limit :limit").bind("after", after).bind("limit", limit);
+    }
+
+    private static int age(Row row){
+        Integer age = row.get("age", Integer.class);
+        return age == null ? 0 : age;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.reactive;
+
+import com.example.demo.controllers.Keyset;
+import com.example.demo.dto.AppointmentView;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentFilter;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux handlers for the read endpoints. They take the same parameters as
+ * the controllers; {@code application/json} answers with the whole array (or
+ * 204 when it is empty), while NDJSON and server-sent events write every row
+ * as soon as the client asks for it, so slow readers hold back the query
+ * instead of piling rows up in memory. Invalid parameters throw
+ * {@link IllegalArgumentException}, which the routes answer with 400.
+ */
+public class ReadHandlers {
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+    private static final List<MediaType> STREAMING = Arrays.asList(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+    private final ReactiveAppointmentRepository appointmentRepository;
+    private final ReactiveResourceRepository resourceRepository;
+
+    public ReadHandlers(ReactiveAppointmentRepository appointmentRepository, ReactiveResourceRepository resourceRepository){
+        this.appointmentRepository = appointmentRepository;
+        this.resourceRepository = resourceRepository;
+    }
+
+    public Mono<ServerResponse> appointments(ServerRequest request){
+        Long after = longParam(request, "after");
+        Integer limit = limit(request);
+        LocalDateTime from = dateTimeParam(request, "from");
+        LocalDateTime to = dateTimeParam(request, "to");
+        if (from != null && to != null && !from.isBefore(to)){
+            throw new IllegalArgumentException("from must be before to");
+        }
+        AppointmentFilter filter = new AppointmentFilter(longParam(request, "doctorId"), longParam(request, "patientId"),
+                request.queryParam("room").orElse(null), from, to);
+        Integer page = filter.isEmpty() ? page(after, limit) : capped(limit);
+        return respond(request, appointmentRepository.findViews(filter, after == null ? 0 : after, page), AppointmentView.class, page, AppointmentView::getId);
+    }
+
+    public Mono<ServerResponse> doctors(ServerRequest request){
+        Long after = longParam(request, "after");
+        Integer limit = limit(request);
+        return respond(request, resourceRepository.findDoctors(after == null ? 0 : after, page(after, limit)), Doctor.class);
+    }
+
+    public Mono<ServerResponse> patients(ServerRequest request){
+        Long after = longParam(request, "after");
+        Integer limit = limit(request);
+        return respond(request, resourceRepository.findPatients(after == null ? 0 : after, page(after, limit)), Patient.class);
+    }
+
+    public Mono<ServerResponse> rooms(ServerRequest request){
+        String after = request.queryParam("after").orElse(null);
+        Integer limit = limit(request);
+        return respond(request, resourceRepository.findRooms(after == null ? "" : after, page(after, limit)), Room.class);
+    }
+
+    private static <T> Mono<ServerResponse> respond(ServerRequest request, Flux<T> rows, Class<T> type){
+        return respond(request, rows, type, null, null);
+    }
+
+    // A full JSON page links to the next one, like AppointmentController
+    private static <T> Mono<ServerResponse> respond(ServerRequest request, Flux<T> rows, Class<T> type, Integer page, Function<T, Object> cursor){
+        Optional<MediaType> streaming = request.headers().accept().stream()
+                .filter(accepted -> !accepted.isWildcardType())
+                .flatMap(accepted -> STREAMING.stream().filter(accepted::isCompatibleWith))
+                .findFirst();
+        if (streaming.isPresent()){
+            return ServerResponse.ok().contentType(streaming.get()).body(rows, type);
+        }
+        return rows.collectList().flatMap(list -> {
+            if (list.isEmpty()){
+                return ServerResponse.noContent().build();
+            }
+            ServerResponse.BodyBuilder ok = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+            if (page != null && cursor != null && list.size() == page){
+                URI next = request.uriBuilder().replaceQueryParam("after", cursor.apply(list.get(list.size() - 1))).build();
+                ok.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            return ok.bodyValue(list);
+        });
+    }
+
+    // Same paging as the controllers: everything without a cursor, otherwise one capped page
+    private static Integer page(Object after, Integer limit){
+        if (after == null && limit == null){
+            return null;
+        }
+        return capped(limit);
+    }
+
+    // Filtered appointment listings are always one capped page, as in AppointmentController
+    private static int capped(Integer limit){
+        return limit == null ? Keyset.DEFAULT_LIMIT : Math.min(limit, Keyset.MAX_LIMIT);
+    }
+
+    private static Integer limit(ServerRequest request){
+        Optional<String> limit = request.queryParam("limit");
+        if (!limit.isPresent()){
+            return null;
+        }
+        int value = Integer.parseInt(limit.get());
+        if (value <= 0){
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return value;
+    }
+
+    private static Long longParam(ServerRequest request, String name){
+        return request.queryParam(name).map(Long::valueOf).orElse(null);
+    }
+
+    private static LocalDateTime dateTimeParam(ServerRequest request, String name){
+        try {
+            return request.queryParam(name).map(value -> LocalDateTime.parse(value, DATE_TIME)).orElse(null);
+        } catch (RuntimeException e){
+            throw new IllegalArgumentException("invalid " + name, e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Optional restrictions for appointment listings. Unset fields do not filter;
+ * {@code from}/{@code to} select appointments intersecting [from, to).
+ */
+public class AppointmentFilter {
+
+    private final Long doctorId;
+    private final Long patientId;
+    private final String roomName;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    public AppointmentFilter(Long doctorId, Long patientId, String roomName, LocalDateTime from, LocalDateTime to){
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+        this.roomName = roomName;
+        this.from = from;
+        this.to = to;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public LocalDateTime getFrom(){
+        return this.from;
+    }
+
+    public LocalDateTime getTo(){
+        return this.to;
+    }
+
+    public boolean isEmpty(){
+        return doctorId == null && patientId == null && roomName == null && from == null && to == null;
+    }
+
+    // Same restrictions as the database query, evaluated in memory
+    public boolean matches(Appointment appointment){
+        if (doctorId != null && (appointment.getDoctor() == null || appointment.getDoctor().getId() != doctorId)){
+            return false;
+        }
+        if (patientId != null && (appointment.getPatient() == null || appointment.getPatient().getId() != patientId)){
+            return false;
+        }
+        if (roomName != null && (appointment.getRoom() == null || !roomName.equals(appointment.getRoom().getRoomName()))){
+            return false;
+        }
+        if (from != null && !appointment.getFinishesAt().isAfter(from)){
+            return false;
+        }
+        return to == null || appointment.getStartsAt().isBefore(to);
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if (this == o){
+            return true;
+        }
+        if (!(o instanceof AppointmentFilter)){
+            return false;
+        }
+        AppointmentFilter other = (AppointmentFilter) o;
+        return Objects.equals(doctorId, other.doctorId) && Objects.equals(patientId, other.patientId)
+                && Objects.equals(roomName, other.roomName) && Objects.equals(from, other.from)
+                && Objects.equals(to, other.to);
+    }
+
+    @Override
+    public int hashCode(){
+        return Objects.hash(doctorId, patientId, roomName, from, to);
+    }
+}
@@ -1,14 +1,91 @@
-
 package com.example.demo.repositories;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
+import com.example.demo.dto.AppointmentView;
 import com.example.demo.entities.Appointment;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+// Read methods fetch patient, doctor and room with the appointment in one
+// statement; otherwise each distinct association costs one extra select
+public interface AppointmentRepository extends JpaRepository<Appointment, Long>, AppointmentRepositoryCustom {
+
+    String SELECT_VIEW = "select new com.example.demo.dto.AppointmentView(a.id, a.version, a.startsAt, a.finishesAt, "
+            + "d.id, d.firstName, d.lastName, p.id, p.firstName, p.lastName, r.roomName) "
+            + "from Appointment a left join a.doctor d left join a.patient p left join a.room r ";
 
-public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+    @EntityGraph(Appointment.WITH_RESOURCES)
     List<Appointment> findAll();
     Appointment save(Appointment appointment);
     void delete(Appointment appointment);
+    @EntityGraph(Appointment.WITH_RESOURCES)
+    List<Appointment> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    @Query(SELECT_VIEW + "order by a.id")
+    List<AppointmentView> findAllViews();
+
+    @Query(SELECT_VIEW + "where a.id = :id")
+    Optional<AppointmentView> findViewById(@Param("id") long id);
+
+    @Query(SELECT_VIEW + "where a.id > :id order by a.id")
+    List<AppointmentView> findViewsByIdGreaterThan(@Param("id") long id, Pageable pageable);
+
+    // Must be consumed inside a transaction and closed afterwards
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_VIEW + "order by a.id")
+    Stream<AppointmentView> streamAllViews();
+
+    /**
+     * Appointments of the doctor intersecting the [startsAt, finishesAt)
+     * window. The (resource, startsAt, finishesAt) index can only seek on
+     * startsAt &lt; finishesAt, since appointment length has no upper bound.
+     * The database therefore reads every earlier appointment of the resource
+     * and filters it on finishesAt. These three queries only serve
+     * SchedulingService while scheduling.index.enabled=false; with the index
+     * on, conflicts are checked against BookingCalendar instead.
+     */
+    @EntityGraph(Appointment.WITH_RESOURCES)
+    @Query("select a from Appointment a where a.doctor.id = :doctorId and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Appointment> findByDoctorWithin(@Param("doctorId") long doctorId, @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    // As findByDoctorWithin, for the index-disabled fallback only
+    @EntityGraph(Appointment.WITH_RESOURCES)
+    @Query("select a from Appointment a where a.patient.id = :patientId and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Appointment> findByPatientWithin(@Param("patientId") long patientId, @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    // As findByDoctorWithin, for the index-disabled fallback only
+    @EntityGraph(Appointment.WITH_RESOURCES)
+    @Query("select a from Appointment a where a.room.roomName = :roomName and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Appointment> findByRoomWithin(@Param("roomName") String roomName, @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    // Bulk deletes of the appointments that would block deleting every doctor,
+    // patient or room; they bypass the persistence context and cascades
+    @Modifying
+    @Query("delete from Appointment a where a.doctor is not null")
+    int deleteAllWithDoctor();
+
+    @Modifying
+    @Query("delete from Appointment a where a.patient is not null")
+    int deleteAllWithPatient();
+
+    @Modifying
+    @Query("delete from Appointment a where a.room is not null")
+    int deleteAllWithRoom();
+
+    // Single-statement deletes returning the affected row count
+    @Modifying
+    @Query("delete from Appointment a where a.id = :id")
+    int deleteOneById(@Param("id") long id);
 }
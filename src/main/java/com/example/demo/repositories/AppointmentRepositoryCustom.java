@@ -0,0 +1,12 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+
+import com.example.demo.dto.AppointmentView;
+
+import org.springframework.data.domain.Pageable;
+
+public interface AppointmentRepositoryCustom {
+    // Keyset page of the appointments matching the filter, ordered by id
+    List<AppointmentView> findFiltered(AppointmentFilter filter, long after, Pageable pageable);
+}
@@ -0,0 +1,69 @@
+package com.example.demo.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import com.example.demo.dto.AppointmentView;
+import com.example.demo.entities.*;
+
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Only the restrictions that are actually set end up in the SQL, so the
+ * database can pick the matching (doctor_id | patient_id | room_id, startsAt,
+ * finishesAt) index instead of evaluating "? is null or ..." for every row.
+ */
+class AppointmentRepositoryCustomImpl implements AppointmentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AppointmentView> findFiltered(AppointmentFilter filter, long after, Pageable pageable){
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AppointmentView> query = cb.createQuery(AppointmentView.class);
+        Root<Appointment> appointment = query.from(Appointment.class);
+        Join<Appointment, Doctor> doctor = appointment.join("doctor", JoinType.LEFT);
+        Join<Appointment, Patient> patient = appointment.join("patient", JoinType.LEFT);
+        Join<Appointment, Room> room = appointment.join("room", JoinType.LEFT);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.greaterThan(appointment.get("id"), after));
+        if (filter.getDoctorId() != null){
+            predicates.add(cb.equal(appointment.get("doctor").get("id"), filter.getDoctorId()));
+        }
+        if (filter.getPatientId() != null){
+            predicates.add(cb.equal(appointment.get("patient").get("id"), filter.getPatientId()));
+        }
+        if (filter.getRoomName() != null){
+            predicates.add(cb.equal(appointment.get("room").get("roomName"), filter.getRoomName()));
+        }
+        if (filter.getTo() != null){
+            predicates.add(cb.lessThan(appointment.get("startsAt"), filter.getTo()));
+        }
+        if (filter.getFrom() != null){
+            predicates.add(cb.greaterThan(appointment.get("finishesAt"), filter.getFrom()));
+        }
+
+        query.select(cb.construct(AppointmentView.class,
+                        appointment.get("id"), appointment.get("version"), appointment.get("startsAt"), appointment.get("finishesAt"),
+                        doctor.get("id"), doctor.get("firstName"), doctor.get("lastName"),
+                        patient.get("id"), patient.get("firstName"), patient.get("lastName"),
+                        room.get("roomName")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(appointment.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+}
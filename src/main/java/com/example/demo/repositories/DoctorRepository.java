@@ -1,13 +1,32 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
 
+import com.example.demo.CacheConfiguration;
 import com.example.demo.entities.Doctor;
 
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     List<Doctor> findAll();
+    @CachePut(cacheNames = CacheConfiguration.DOCTORS, key = "#result.id")
     Doctor save(Doctor doc);
     void delete(Doctor doc);
+    List<Doctor> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    // Detached copies for read endpoints; writes that need a managed entity use findById
+    @Cacheable(cacheNames = CacheConfiguration.DOCTORS, unless = "#result == null")
+    @Query("select d from Doctor d where d.id = :id")
+    Optional<Doctor> findCachedById(@Param("id") long id);
+
+    @Modifying
+    @Query("delete from Doctor d where d.id = :id")
+    int deleteOneById(@Param("id") long id);
 }
@@ -2,13 +2,32 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
 
+import com.example.demo.CacheConfiguration;
 import com.example.demo.entities.Patient;
 
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
     List<Patient> findAll();
+    @CachePut(cacheNames = CacheConfiguration.PATIENTS, key = "#result.id")
     Patient save(Patient doc);
     void delete(Patient doc);
+    List<Patient> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    // Detached copies for read endpoints; writes that need a managed entity use findById
+    @Cacheable(cacheNames = CacheConfiguration.PATIENTS, unless = "#result == null")
+    @Query("select p from Patient p where p.id = :id")
+    Optional<Patient> findCachedById(@Param("id") long id);
+
+    @Modifying
+    @Query("delete from Patient p where p.id = :id")
+    int deleteOneById(@Param("id") long id);
 }
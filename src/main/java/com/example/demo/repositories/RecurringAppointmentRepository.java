@@ -0,0 +1,52 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.example.demo.entities.RecurringAppointment;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+// The span of a series runs from its first start to its last finish; a series
+// spanning a window may still have no occurrence within it
+public interface RecurringAppointmentRepository extends JpaRepository<RecurringAppointment, Long> {
+
+    @EntityGraph(RecurringAppointment.WITH_RESOURCES)
+    List<RecurringAppointment> findAll();
+
+    // Series whose span intersects the [startsAt, finishesAt) window. As in
+    // AppointmentRepository, they read the resource's whole past and only
+    // serve the fallback while scheduling.index.enabled=false
+    @EntityGraph(RecurringAppointment.WITH_RESOURCES)
+    @Query("select s from RecurringAppointment s where s.doctor.id = :doctorId and s.startsAt < :finishesAt and s.lastFinishesAt > :startsAt")
+    List<RecurringAppointment> findByDoctorWithin(@Param("doctorId") long doctorId, @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    @EntityGraph(RecurringAppointment.WITH_RESOURCES)
+    @Query("select s from RecurringAppointment s where s.patient.id = :patientId and s.startsAt < :finishesAt and s.lastFinishesAt > :startsAt")
+    List<RecurringAppointment> findByPatientWithin(@Param("patientId") long patientId, @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    @EntityGraph(RecurringAppointment.WITH_RESOURCES)
+    @Query("select s from RecurringAppointment s where s.room.roomName = :roomName and s.startsAt < :finishesAt and s.lastFinishesAt > :startsAt")
+    List<RecurringAppointment> findByRoomWithin(@Param("roomName") String roomName, @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    @Modifying
+    @Query("delete from RecurringAppointment s where s.id = :id")
+    int deleteOneById(@Param("id") long id);
+
+    // Like those of AppointmentRepository, these bypass the persistence context
+    @Modifying
+    @Query("delete from RecurringAppointment s where s.doctor is not null")
+    int deleteAllWithDoctor();
+
+    @Modifying
+    @Query("delete from RecurringAppointment s where s.patient is not null")
+    int deleteAllWithPatient();
+
+    @Modifying
+    @Query("delete from RecurringAppointment s where s.room is not null")
+    int deleteAllWithRoom();
+}
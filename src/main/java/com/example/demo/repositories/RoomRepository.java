@@ -4,14 +4,32 @@ package com.example.demo.repositories;
 import java.util.List;
 import java.util.Optional;
 
+import com.example.demo.CacheConfiguration;
 import com.example.demo.entities.Room;
 
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface RoomRepository extends JpaRepository<Room, Long> {
     List<Room> findAll();
     Optional<Room> findByRoomName(String roomName);
+    @CachePut(cacheNames = CacheConfiguration.ROOMS, key = "#result.roomName")
     Room save(Room room);
     void delete(Room room);
     void deleteByRoomName(String roomName);
+    List<Room> findByRoomNameGreaterThanOrderByRoomNameAsc(String roomName, Pageable pageable);
+
+    // Detached copies for read endpoints; writes that need a managed entity use findByRoomName
+    @Cacheable(cacheNames = CacheConfiguration.ROOMS, unless = "#result == null")
+    @Query("select r from Room r where r.roomName = :roomName")
+    Optional<Room> findCachedByRoomName(@Param("roomName") String roomName);
+
+    @Modifying
+    @Query("delete from Room r where r.roomName = :roomName")
+    int deleteOneByRoomName(@Param("roomName") String roomName);
 }
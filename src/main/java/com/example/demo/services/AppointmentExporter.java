@@ -0,0 +1,53 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.dto.AppointmentView;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes every appointment as newline-delimited JSON straight from a database
+ * cursor. Rows are read as {@link AppointmentView} projections, which the
+ * persistence context does not keep, so memory stays bounded no matter how
+ * large the table is.
+ */
+@Service
+public class AppointmentExporter {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    public void writeNdjson(OutputStream out){
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.executeWithoutResult(status -> {
+            try (Stream<AppointmentView> appointments = appointmentRepository.streamAllViews()){
+                Iterator<AppointmentView> iterator = appointments.iterator();
+                while (iterator.hasNext()){
+                    out.write(objectMapper.writeValueAsBytes(iterator.next()));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
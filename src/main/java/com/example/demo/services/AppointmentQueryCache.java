@@ -0,0 +1,143 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.AppointmentFilter;
+import com.example.demo.entities.Appointment;
+import com.example.demo.dto.AppointmentView;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Caches the results of the appointment read queries, keyed by the request
+ * parameters. {@link SchedulingService} reports every appointment it books or
+ * deletes, and only the cached listings whose filter could contain that
+ * appointment are dropped; a booking for one doctor leaves the schedules of
+ * the others cached.
+ *
+ * It relies on every write going through this instance, so by default it is
+ * only enabled together with the in-memory scheduling index.
+ *
+ * Only keyset pages and single views are cached. The unpaged listing grows
+ * with the table, so it always goes to the database, and cached pages are
+ * bounded by their total number of rows rather than by entries.
+ */
+@Service
+public class AppointmentQueryCache {
+
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    @Value("${appointments.cache.enabled:${scheduling.index.enabled:true}}")
+    boolean enabled;
+
+    @Value("${appointments.cache.maximum-size:1000}")
+    long maximumSize;
+
+    @Value("${appointments.cache.maximum-rows:100000}")
+    long maximumRows;
+
+    @Value("${appointments.cache.ttl:5m}")
+    Duration ttl;
+
+    private final AtomicLong generation = new AtomicLong();
+    private Cache<Listing, List<AppointmentView>> listings;
+    private Cache<Long, Optional<AppointmentView>> views;
+
+    @PostConstruct
+    void init(){
+        listings = Caffeine.newBuilder().maximumWeight(maximumRows)
+                .weigher((Listing listing, List<AppointmentView> rows) -> Math.max(1, rows.size()))
+                .expireAfterWrite(ttl).recordStats().build();
+        views = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().build();
+        if (meterRegistry != null){
+            CaffeineCacheMetrics.monitor(meterRegistry, listings, "appointmentListings");
+            CaffeineCacheMetrics.monitor(meterRegistry, views, "appointmentViews");
+        }
+    }
+
+    public List<AppointmentView> listing(AppointmentFilter filter, Long after, Integer limit, Supplier<List<AppointmentView>> query){
+        if (!enabled || (filter.isEmpty() && after == null && limit == null)){
+            return query.get();
+        }
+        return load(listings, new Listing(filter, after, limit), () -> Collections.unmodifiableList(query.get()));
+    }
+
+    public Optional<AppointmentView> view(long id, Supplier<Optional<AppointmentView>> query){
+        if (!enabled){
+            return query.get();
+        }
+        return load(views, id, query);
+    }
+
+    public void invalidate(Appointment appointment){
+        generation.incrementAndGet();
+        listings.asMap().keySet().removeIf(listing -> listing.filter.matches(appointment));
+        views.invalidate(appointment.getId());
+    }
+
+    public void invalidateAll(){
+        generation.incrementAndGet();
+        listings.invalidateAll();
+        views.invalidateAll();
+    }
+
+    // A query that overlapped an invalidation may have read the old rows, so
+    // its result is dropped again instead of being served until it expires
+    private <K, V> V load(Cache<K, V> cache, K key, Supplier<V> query){
+        V cached = cache.getIfPresent(key);
+        if (cached != null){
+            return cached;
+        }
+        long seen = generation.get();
+        V loaded = query.get();
+        cache.put(key, loaded);
+        if (generation.get() != seen){
+            cache.invalidate(key);
+        }
+        return loaded;
+    }
+
+    private static final class Listing {
+
+        private final AppointmentFilter filter;
+        private final Long after;
+        private final Integer limit;
+
+        Listing(AppointmentFilter filter, Long after, Integer limit){
+            this.filter = filter;
+            this.after = after;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Listing)){
+                return false;
+            }
+            Listing other = (Listing) o;
+            return filter.equals(other.filter) && Objects.equals(after, other.after) && Objects.equals(limit, other.limit);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(filter, after, limit);
+        }
+    }
+}
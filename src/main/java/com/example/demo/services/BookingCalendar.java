@@ -0,0 +1,153 @@
+package com.example.demo.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * One {@link Timeline} per doctor, patient and room, addressed by a dense int
+ * resource id interned on first use. Looking up an already known resource
+ * neither boxes nor allocates: doctor and patient ids go through open
+ * addressing tables of primitive longs, room names through their cached hash.
+ *
+ * Times are epoch minutes, as computed by {@link Appointment#toStartMinute}
+ * and {@link Appointment#toEndMinute}.
+ */
+public class BookingCalendar {
+
+    public static final int NONE = -1;
+
+    private final LongIds doctors = new LongIds();
+    private final LongIds patients = new LongIds();
+    private final Map<String, Integer> rooms = new HashMap<>();
+    private Timeline[] timelines = new Timeline[64];
+    private int size;
+
+    public synchronized int doctor(long id){
+        int resource = doctors.get(id);
+        if (resource == NONE){
+            resource = add();
+            doctors.put(id, resource);
+        }
+        return resource;
+    }
+
+    public synchronized int patient(long id){
+        int resource = patients.get(id);
+        if (resource == NONE){
+            resource = add();
+            patients.put(id, resource);
+        }
+        return resource;
+    }
+
+    public synchronized int room(String name){
+        Integer resource = rooms.get(name);
+        if (resource == null){
+            resource = add();
+            rooms.put(name, resource);
+        }
+        return resource;
+    }
+
+    public synchronized int findDoctor(long id){
+        return doctors.get(id);
+    }
+
+    public synchronized int findPatient(long id){
+        return patients.get(id);
+    }
+
+    public synchronized int findRoom(String name){
+        Integer resource = rooms.get(name);
+        return resource == null ? NONE : resource;
+    }
+
+    /**
+     * @return the timeline of an interned resource, or null for {@link #NONE}
+     */
+    public synchronized Timeline timeline(int resource){
+        return resource == NONE ? null : timelines[resource];
+    }
+
+    public boolean overlaps(int resource, long from, long to){
+        Timeline timeline = timeline(resource);
+        return timeline != null && timeline.overlaps(from, to);
+    }
+
+    public synchronized void clear(){
+        doctors.clear();
+        patients.clear();
+        rooms.clear();
+        timelines = new Timeline[64];
+        size = 0;
+    }
+
+    private int add(){
+        if (size == timelines.length){
+            timelines = Arrays.copyOf(timelines, size * 2);
+        }
+        timelines[size] = new Timeline();
+        return size++;
+    }
+
+    private static final class LongIds {
+
+        private long[] keys = new long[16];
+        // resource + 1, so 0 marks a free slot
+        private int[] values = new int[16];
+        private int size;
+
+        int get(long key){
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; values[i] != 0; i = (i + 1) & mask){
+                if (keys[i] == key){
+                    return values[i] - 1;
+                }
+            }
+            return NONE;
+        }
+
+        void put(long key, int resource){
+            if (2 * (size + 1) > keys.length){
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != 0 && keys[i] != key){
+                i = (i + 1) & mask;
+            }
+            if (values[i] == 0){
+                size++;
+            }
+            keys[i] = key;
+            values[i] = resource + 1;
+        }
+
+        void clear(){
+            keys = new long[16];
+            values = new int[16];
+            size = 0;
+        }
+
+        private void grow(){
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++){
+                if (oldValues[i] != 0){
+                    put(oldKeys[i], oldValues[i] - 1);
+                }
+            }
+        }
+
+        private static int hash(long key){
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
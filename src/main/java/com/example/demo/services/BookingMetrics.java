@@ -0,0 +1,93 @@
+package com.example.demo.services;
+
+import com.example.demo.dto.BookingResult;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Counts booking outcomes as {@code appointments.bookings}, tagged with the
+ * outcome (ok, conflict, bad_request) and whether the appointment came alone,
+ * in a batch or as a recurring series. The counters are registered up front
+ * so every series is scraped from zero.
+ */
+@Service
+public class BookingMetrics {
+
+    public static final String OK = "ok";
+    public static final String CONFLICT = "conflict";
+    public static final String BAD_REQUEST = "bad_request";
+
+    @Autowired(required = false)
+    MeterRegistry meterRegistry;
+
+    private Counter singleOk, singleConflict, singleBadRequest;
+    private Counter batchOk, batchConflict, batchBadRequest;
+    private Counter seriesOk, seriesConflict, seriesBadRequest;
+
+    @PostConstruct
+    void init(){
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : Metrics.globalRegistry;
+        singleOk = counter(registry, OK, "single");
+        singleConflict = counter(registry, CONFLICT, "single");
+        singleBadRequest = counter(registry, BAD_REQUEST, "single");
+        batchOk = counter(registry, OK, "batch");
+        batchConflict = counter(registry, CONFLICT, "batch");
+        batchBadRequest = counter(registry, BAD_REQUEST, "batch");
+        seriesOk = counter(registry, OK, "series");
+        seriesConflict = counter(registry, CONFLICT, "series");
+        seriesBadRequest = counter(registry, BAD_REQUEST, "series");
+    }
+
+    public void booked(){
+        singleOk.increment();
+    }
+
+    public void conflict(){
+        singleConflict.increment();
+    }
+
+    public void badRequest(){
+        singleBadRequest.increment();
+    }
+
+    public void seriesBooked(){
+        seriesOk.increment();
+    }
+
+    public void seriesConflict(){
+        seriesConflict.increment();
+    }
+
+    public void seriesBadRequest(){
+        seriesBadRequest.increment();
+    }
+
+    public void batch(List<BookingResult> results){
+        for (BookingResult result : results){
+            if (result.isAccepted()){
+                batchOk.increment();
+            } else if (result.isConflict()){
+                batchConflict.increment();
+            } else {
+                batchBadRequest.increment();
+            }
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String outcome, String source){
+        return Counter.builder("appointments.bookings")
+                .description("Appointment booking attempts by outcome")
+                .tag("outcome", outcome)
+                .tag("source", source)
+                .register(registry);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.services;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of lock stripes for doctors, patients and rooms. Bookings that
+ * touch the same resource map to the same stripe and are serialized, while
+ * unrelated bookings almost always land on different stripes and run in
+ * parallel. Stripes are always taken in ascending order to rule out deadlocks.
+ */
+public class ResourceLocks {
+
+    static final int DOCTOR = 1;
+    static final int PATIENT = 2;
+    static final int ROOM = 3;
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public ResourceLocks(int concurrency){
+        int size = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++){
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public int stripeFor(int dimension, long id){
+        return spread(31 * dimension + Long.hashCode(id));
+    }
+
+    public int stripeFor(int dimension, String name){
+        return spread(31 * dimension + name.hashCode());
+    }
+
+    public int[] lock(int... requested){
+        int[] taken = distinctSorted(requested);
+        int locked = 0;
+        try {
+            for (int stripe : taken){
+                stripes[stripe].lock();
+                locked++;
+            }
+        } finally {
+            if (locked < taken.length){
+                unlock(Arrays.copyOf(taken, locked));
+            }
+        }
+        return taken;
+    }
+
+    // Every stripe, for writes that touch the whole calendar at once
+    public int[] lockAll(){
+        int[] all = new int[stripes.length];
+        for (int i = 0; i < all.length; i++){
+            all[i] = i;
+        }
+        return lock(all);
+    }
+
+    public void unlock(int[] taken){
+        for (int i = taken.length - 1; i >= 0; i--){
+            stripes[taken[i]].unlock();
+        }
+    }
+
+    public int size(){
+        return stripes.length;
+    }
+
+    private int spread(int hash){
+        // Fibonacci hashing so neighbouring ids fall on different stripes
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int[] distinctSorted(int[] requested){
+        int[] sorted = requested.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++){
+            if (i == 0 || sorted[i] != sorted[i - 1]){
+                sorted[count++] = sorted[i];
+            }
+        }
+        return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Change counters for the appointment, doctor, patient and room collections,
+ * bumped after every committed write. List endpoints derive their ETag from
+ * the counter before querying, so an unchanged collection is answered with
+ * 304 without touching the database.
+ *
+ * The counters only see writes made through this instance; with
+ * {@code scheduling.index.enabled=false} there may be others, so no
+ * collection tag is handed out.
+ */
+@Service
+public class ResourceVersions {
+
+    public static final String APPOINTMENTS = "appointments";
+    public static final String DOCTORS = "doctors";
+    public static final String PATIENTS = "patients";
+    public static final String ROOMS = "rooms";
+
+    @Value("${scheduling.index.enabled:true}")
+    boolean enabled;
+
+    // a restart must not hand out tags a client saw from the previous process
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public void changed(String collection){
+        counters.computeIfAbsent(collection, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @return the strong ETag of the collection, or null when it is not tracked
+     */
+    public String etag(String collection){
+        if (!enabled){
+            return null;
+        }
+        long version = counters.computeIfAbsent(collection, k -> new AtomicLong()).get();
+        return "\"" + collection + "-" + epoch + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,1008 @@
+package com.example.demo.services;
+
+import com.example.demo.CacheConfiguration;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.dto.BookingResult;
+import com.example.demo.dto.FreeSlot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps one {@link Timeline} per doctor, patient and room in a
+ * {@link BookingCalendar} so booking conflicts are found without scanning
+ * every appointment, and checked without allocating. The index is seeded from
+ * {@link AppointmentRepository} at startup and updated on every save and delete
+ * that goes through this service.
+ *
+ * With {@code scheduling.index.enabled=false} (e.g. several instances sharing
+ * one database) nothing is kept in memory and conflicts are looked up with the
+ * indexed range queries of {@link AppointmentRepository} instead.
+ *
+ * Bookings check and save while holding the lock stripes of their doctor,
+ * patient and room, so two requests for the same resource cannot both pass
+ * the check, while bookings for unrelated resources proceed in parallel.
+ *
+ * Recurring series are indexed unexpanded on the same timelines, so checking
+ * a booking against them costs constant time per series of its resources.
+ */
+@Service
+public class SchedulingService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RecurringAppointmentRepository recurringAppointmentRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    AppointmentQueryCache queryCache;
+
+    @Autowired
+    ResourceVersions resourceVersions;
+
+    @Value("${scheduling.index.enabled:true}")
+    boolean indexEnabled;
+
+    private final BookingCalendar calendar = new BookingCalendar();
+    private final Map<Long, Appointment> appointments = new ConcurrentHashMap<>();
+    private final Map<Long, RecurringAppointment> series = new ConcurrentHashMap<>();
+    private final ResourceLocks locks = new ResourceLocks(1024);
+
+    @PostConstruct
+    public void seed(){
+        clearIndex();
+        queryCache.invalidateAll();
+        if (indexEnabled){
+            // in start order every insert appends to its timelines
+            List<Appointment> stored = new ArrayList<>(appointmentRepository.findAll());
+            stored.sort(Comparator.comparing(Appointment::getStartsAt).thenComparing(Appointment::getId));
+            stored.forEach(this::index);
+            recurringAppointmentRepository.findAll().forEach(this::index);
+        }
+    }
+
+    /**
+     * The booked appointments, and occurrences of recurring series, that need
+     * the same doctor, patient or room at the same time as this one.
+     */
+    public List<Appointment> findConflicts(Appointment appointment){
+        List<Appointment> found = indexEnabled ? findCandidatesInIndex(appointment) : findCandidatesInDatabase(appointment);
+        for (RecurringAppointment recurring : findSeries(idOf(appointment.getDoctor()), idOf(appointment.getPatient()),
+                nameOf(appointment.getRoom()), appointment.getStartsAt(), appointment.getFinishesAt())){
+            found.addAll(recurring.occurrencesWithin(appointment.getStartsAt(), appointment.getFinishesAt()));
+        }
+
+        return found.stream()
+                .filter(e -> e.overlaps(appointment))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Whether an occurrence of the series overlaps a booking or an occurrence
+     * of another series of its doctor, patient or room. Only the bookings and
+     * series within the span of the series are read, each checked without
+     * expanding the series.
+     */
+    public boolean conflicts(RecurringAppointment recurring){
+        LocalDateTime from = recurring.getStartsAt();
+        LocalDateTime to = recurring.getLastFinishesAt();
+        List<Appointment> booked = new ArrayList<>();
+        if (indexEnabled){
+            long start = Appointment.toStartMinute(from);
+            long end = Appointment.toEndMinute(to);
+            if (isSaved(recurring.getDoctor())){
+                lookup(calendar.findDoctor(recurring.getDoctor().getId()), start, end, booked);
+            }
+            if (isSaved(recurring.getPatient())){
+                lookup(calendar.findPatient(recurring.getPatient().getId()), start, end, booked);
+            }
+            if (recurring.getRoom() != null){
+                lookup(calendar.findRoom(recurring.getRoom().getRoomName()), start, end, booked);
+            }
+        } else {
+            if (isSaved(recurring.getDoctor())){
+                booked.addAll(appointmentRepository.findByDoctorWithin(recurring.getDoctor().getId(), from, to));
+            }
+            if (isSaved(recurring.getPatient())){
+                booked.addAll(appointmentRepository.findByPatientWithin(recurring.getPatient().getId(), from, to));
+            }
+            if (recurring.getRoom() != null){
+                booked.addAll(appointmentRepository.findByRoomWithin(recurring.getRoom().getRoomName(), from, to));
+            }
+        }
+        List<RecurringAppointment> repeating = findSeries(idOf(recurring.getDoctor()), idOf(recurring.getPatient()),
+                nameOf(recurring.getRoom()), from, to);
+        return booked.stream().anyMatch(recurring::overlaps) || repeating.stream().anyMatch(recurring::overlaps);
+    }
+
+    /**
+     * Whether the appointment overlaps a booking of its doctor, patient or
+     * room. With the index enabled this reads the primitive timelines only and
+     * allocates nothing.
+     */
+    public boolean conflicts(Appointment appointment){
+        if (!indexEnabled){
+            return !findConflicts(appointment).isEmpty();
+        }
+        long start = appointment.getStartMinute();
+        long end = appointment.getEndMinute();
+        return (isSaved(appointment.getDoctor()) && calendar.overlaps(calendar.findDoctor(appointment.getDoctor().getId()), start, end))
+                || (isSaved(appointment.getPatient()) && calendar.overlaps(calendar.findPatient(appointment.getPatient().getId()), start, end))
+                || (appointment.getRoom() != null && calendar.overlaps(calendar.findRoom(appointment.getRoom().getRoomName()), start, end));
+    }
+
+    /**
+     * Finds the first gaps of at least {@code duration} inside [from, to) where
+     * neither the doctor nor the room is booked. The bookings of both overlapping
+     * the window are sorted by start and merged in one pass, each uncovered
+     * stretch between them being a gap.
+     * @param doctorId the doctor, or null to look at the room only
+     * @param roomName the room, or null to look at the doctor only
+     * @return at most {@code limit} gaps, in time order
+     */
+    public List<FreeSlot> findFreeSlots(Long doctorId, String roomName, LocalDateTime from, LocalDateTime to, Duration duration, int limit){
+        List<Appointment> busy = new ArrayList<>();
+        if (indexEnabled){
+            if (doctorId != null){
+                lookup(calendar.findDoctor(doctorId), Appointment.toStartMinute(from), Appointment.toEndMinute(to), busy);
+            }
+            if (roomName != null){
+                lookup(calendar.findRoom(roomName), Appointment.toStartMinute(from), Appointment.toEndMinute(to), busy);
+            }
+        } else {
+            if (doctorId != null){
+                busy.addAll(appointmentRepository.findByDoctorWithin(doctorId, from, to));
+            }
+            if (roomName != null){
+                busy.addAll(appointmentRepository.findByRoomWithin(roomName, from, to));
+            }
+        }
+        for (RecurringAppointment recurring : findSeries(doctorId, null, roomName, from, to)){
+            busy.addAll(recurring.occurrencesWithin(from, to));
+        }
+        busy.sort(Comparator.comparing(Appointment::getStartsAt));
+
+        List<FreeSlot> slots = new ArrayList<>();
+        LocalDateTime free = from;
+        for (Appointment appointment : busy){
+            if (slots.size() == limit || !free.isBefore(to)){
+                return slots;
+            }
+            if (appointment.getStartsAt().isAfter(free)){
+                addIfFits(slots, free, min(appointment.getStartsAt(), to), duration);
+            }
+            free = max(free, appointment.getFinishesAt());
+        }
+        if (slots.size() < limit){
+            addIfFits(slots, free, to, duration);
+        }
+        return slots;
+    }
+
+    private static void addIfFits(List<FreeSlot> slots, LocalDateTime startsAt, LocalDateTime finishesAt, Duration duration){
+        if (!startsAt.plus(duration).isAfter(finishesAt)){
+            slots.add(new FreeSlot(startsAt, finishesAt));
+        }
+    }
+
+    /**
+     * Saves the appointment unless it conflicts with an existing one.
+     * @return the saved appointment, or empty when it was rejected
+     */
+    public Optional<Appointment> book(Appointment appointment){
+        int[] stripes = locks.lock(stripesFor(appointment));
+        try {
+            if (conflicts(appointment)){
+                return Optional.empty();
+            }
+            List<String> created = createdBy(Collections.singletonList(appointment));
+            // commits before the stripes are released
+            Appointment saved = new TransactionTemplate(transactionManager).execute(status -> {
+                attach(appointment);
+                return appointmentRepository.save(appointment);
+            });
+            if (indexEnabled){
+                index(saved);
+            }
+            queryCache.invalidate(saved);
+            created.forEach(resourceVersions::changed);
+            return Optional.of(saved);
+        } finally {
+            locks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Saves the series unless one of its occurrences conflicts with a booked
+     * appointment or with an occurrence of another series.
+     * @return the saved series, or empty when it was rejected
+     */
+    public Optional<RecurringAppointment> bookSeries(RecurringAppointment recurring){
+        int[] stripes = locks.lock(stripesFor(recurring.getDoctor(), recurring.getPatient(), recurring.getRoom()));
+        try {
+            if (conflicts(recurring)){
+                return Optional.empty();
+            }
+            List<String> created = createdBy(Collections.singletonList(recurring.occurrence(0)));
+            RecurringAppointment saved = new TransactionTemplate(transactionManager).execute(status -> {
+                attach(recurring);
+                return recurringAppointmentRepository.save(recurring);
+            });
+            if (indexEnabled){
+                index(saved);
+            }
+            created.stream().filter(collection -> !collection.equals(ResourceVersions.APPOINTMENTS)).forEach(resourceVersions::changed);
+            return Optional.of(saved);
+        } finally {
+            locks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Deletes the series, with all its occurrences, with one statement.
+     * @return false when there was no such series
+     */
+    public boolean cancelSeries(long id){
+        int deleted = new TransactionTemplate(transactionManager).execute(status -> recurringAppointmentRepository.deleteOneById(id));
+        unindexSeries(id);
+        return deleted > 0;
+    }
+
+    /**
+     * Books a whole batch under one set of lock stripes and one transaction.
+     * The items are swept in start order together with the bookings already
+     * stored for each doctor, patient and room in the window its items cover,
+     * so the check costs one lookup per resource instead of one per item.
+     * Within the batch the item that starts first wins.
+     * @return one result per item, in request order
+     */
+    public List<BookingResult> bookAll(List<Appointment> batch){
+        BookingResult[] results = new BookingResult[batch.size()];
+        List<Integer> valid = new ArrayList<>();
+        int[] requested = new int[3 * batch.size()];
+        int count = 0;
+        for (int i = 0; i < batch.size(); i++){
+            Appointment appointment = batch.get(i);
+            String invalid = validate(appointment);
+            if (invalid != null){
+                results[i] = BookingResult.rejected(i, invalid);
+                continue;
+            }
+            valid.add(i);
+            for (int stripe : stripesFor(appointment)){
+                requested[count++] = stripe;
+            }
+        }
+
+        int[] stripes = locks.lock(Arrays.copyOf(requested, count));
+        try {
+            List<Integer> accepted = sweep(valid, batch, results);
+            if (accepted.isEmpty()){
+                return Arrays.asList(results);
+            }
+
+            List<Appointment> toSave = accepted.stream().map(batch::get).collect(Collectors.toList());
+            List<String> created = createdBy(toSave);
+            List<Appointment> saved = new TransactionTemplate(transactionManager).execute(status -> {
+                attachAll(toSave);
+                return appointmentRepository.saveAll(toSave);
+            });
+            for (int k = 0; k < accepted.size(); k++){
+                Appointment appointment = saved.get(k);
+                if (indexEnabled){
+                    index(appointment);
+                }
+                queryCache.invalidate(appointment);
+                results[accepted.get(k)] = BookingResult.accepted(accepted.get(k), appointment.getId());
+            }
+            created.forEach(resourceVersions::changed);
+            return Arrays.asList(results);
+        } finally {
+            locks.unlock(stripes);
+        }
+    }
+
+    /**
+     * Deletes the appointment with one statement.
+     * @return false when there was no such appointment
+     */
+    public boolean cancel(long id){
+        int deleted = new TransactionTemplate(transactionManager).execute(status -> appointmentRepository.deleteOneById(id));
+        Appointment removed = unindex(id);
+        invalidate(removed == null ? Collections.emptyList() : Collections.singletonList(removed));
+        if (deleted > 0){
+            resourceVersions.changed(ResourceVersions.APPOINTMENTS);
+        }
+        return deleted > 0;
+    }
+
+    // Existing doctors, patients and rooms must be managed, otherwise the
+    // cascade on Appointment would try to persist them again
+    private void attach(Appointment appointment){
+        Doctor doctor = appointment.getDoctor();
+        if (doctor != null && doctor.getId() != 0){
+            doctorRepository.findById(doctor.getId()).ifPresent(appointment::setDoctor);
+        }
+        Patient patient = appointment.getPatient();
+        if (patient != null && patient.getId() != 0){
+            patientRepository.findById(patient.getId()).ifPresent(appointment::setPatient);
+        }
+        Room room = appointment.getRoom();
+        if (room != null){
+            roomRepository.findByRoomName(room.getRoomName()).ifPresent(appointment::setRoom);
+        }
+    }
+
+    private void attach(RecurringAppointment recurring){
+        Doctor doctor = recurring.getDoctor();
+        if (doctor != null && doctor.getId() != 0){
+            doctorRepository.findById(doctor.getId()).ifPresent(recurring::setDoctor);
+        }
+        Patient patient = recurring.getPatient();
+        if (patient != null && patient.getId() != 0){
+            patientRepository.findById(patient.getId()).ifPresent(recurring::setPatient);
+        }
+        Room room = recurring.getRoom();
+        if (room != null){
+            roomRepository.findByRoomName(room.getRoomName()).ifPresent(recurring::setRoom);
+        }
+    }
+
+    // Batches usually repeat the same doctors, patients and rooms, so each one
+    // is loaded once; a new room named twice must also be persisted only once
+    private void attachAll(List<Appointment> batch){
+        Set<Long> doctorIds = new HashSet<>();
+        Set<Long> patientIds = new HashSet<>();
+        for (Appointment appointment : batch){
+            if (appointment.getDoctor() != null && appointment.getDoctor().getId() != 0){
+                doctorIds.add(appointment.getDoctor().getId());
+            }
+            if (appointment.getPatient() != null && appointment.getPatient().getId() != 0){
+                patientIds.add(appointment.getPatient().getId());
+            }
+        }
+        Map<Long, Doctor> doctorsById = doctorRepository.findAllById(doctorIds).stream()
+                .collect(Collectors.toMap(Doctor::getId, Function.identity()));
+        Map<Long, Patient> patientsById = patientRepository.findAllById(patientIds).stream()
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        Map<String, Room> roomsByName = new HashMap<>();
+
+        for (Appointment appointment : batch){
+            Doctor doctor = appointment.getDoctor();
+            if (doctor != null && doctorsById.containsKey(doctor.getId())){
+                appointment.setDoctor(doctorsById.get(doctor.getId()));
+            }
+            Patient patient = appointment.getPatient();
+            if (patient != null && patientsById.containsKey(patient.getId())){
+                appointment.setPatient(patientsById.get(patient.getId()));
+            }
+            Room room = appointment.getRoom();
+            appointment.setRoom(roomsByName.computeIfAbsent(room.getRoomName(),
+                    name -> roomRepository.findByRoomName(name).orElse(room)));
+        }
+    }
+
+    private static String validate(Appointment appointment){
+        if (appointment.getStartsAt() == null || appointment.getFinishesAt() == null
+                || !appointment.getStartsAt().isBefore(appointment.getFinishesAt())){
+            return "invalid time range";
+        }
+        if (appointment.getRoom() == null || appointment.getRoom().getRoomName() == null){
+            return "missing room";
+        }
+        return null;
+    }
+
+    /**
+     * @return why the series cannot be booked, or null when it can
+     */
+    public static String validate(RecurringAppointment recurring){
+        if (recurring.getStartsAt() == null || recurring.getFinishesAt() == null
+                || !recurring.getStartsAt().isBefore(recurring.getFinishesAt())){
+            return "invalid time range";
+        }
+        if (recurring.getRoom() == null || recurring.getRoom().getRoomName() == null){
+            return "missing room";
+        }
+        if (recurring.getFrequency() == null || recurring.getInterval() < 1){
+            return "invalid frequency";
+        }
+        if (recurring.getUntil() == null && recurring.getCount() == null){
+            return "missing until or count";
+        }
+        if (recurring.getCount() != null && recurring.getCount() < 1){
+            return "invalid count";
+        }
+        if ((recurring.getCount() != null && recurring.getCount() > RecurringAppointment.MAX_OCCURRENCES)
+                || recurring.getPeriodDays() > RecurringAppointment.MAX_SPAN_DAYS){
+            return "series too long";
+        }
+        long occurrences = recurring.getOccurrences();
+        if (occurrences == 0){
+            return "no occurrences";
+        }
+        if (occurrences > RecurringAppointment.MAX_OCCURRENCES
+                || (occurrences - 1) * recurring.getPeriodMinutes() + recurring.getEndMinute() - recurring.getStartMinute()
+                        > RecurringAppointment.MAX_SPAN_DAYS * 24L * 60){
+            return "series too long";
+        }
+        if (recurring.getEndMinute() - recurring.getStartMinute() > recurring.getPeriodMinutes()){
+            return "occurrences overlap each other";
+        }
+        return null;
+    }
+
+    // Walks the items in start order. Every doctor, patient and room they name
+    // gets a lane with the bookings stored in the window its items cover, so
+    // each lane also sees its items in start order and checks them in one pass
+    private List<Integer> sweep(List<Integer> items, List<Appointment> batch, BookingResult[] results){
+        items.sort(Comparator.comparing((Integer i) -> batch.get(i).getStartsAt()).thenComparing(i -> i));
+
+        Map<List<Object>, Lane> lanes = new HashMap<>();
+        List<List<Lane>> lanesOfItem = new ArrayList<>();
+        for (int i : items){
+            Appointment appointment = batch.get(i);
+            List<Lane> own = new ArrayList<>(3);
+            if (isSaved(appointment.getDoctor())){
+                own.add(lane(lanes, ResourceLocks.DOCTOR, appointment.getDoctor().getId()));
+            }
+            if (isSaved(appointment.getPatient())){
+                own.add(lane(lanes, ResourceLocks.PATIENT, appointment.getPatient().getId()));
+            }
+            own.add(lane(lanes, ResourceLocks.ROOM, appointment.getRoom().getRoomName()));
+            own.forEach(lane -> lane.cover(appointment));
+            lanesOfItem.add(own);
+        }
+        for (Lane lane : lanes.values()){
+            lane.stored = findStored(lane);
+            lane.stored.sort(Comparator.comparing(Appointment::getStartsAt));
+        }
+
+        List<Integer> accepted = new ArrayList<>();
+        for (int k = 0; k < items.size(); k++){
+            int i = items.get(k);
+            Appointment appointment = batch.get(i);
+            boolean booked = false;
+            boolean inBatch = false;
+            for (Lane lane : lanesOfItem.get(k)){
+                booked |= lane.conflictsWithStored(appointment);
+                inBatch |= lane.conflictsWithBatch(appointment);
+            }
+            if (booked){
+                results[i] = BookingResult.conflict(i, "conflicts with a booked appointment");
+            } else if (inBatch){
+                results[i] = BookingResult.conflict(i, "conflicts with another appointment of the batch");
+            } else {
+                accepted.add(i);
+                lanesOfItem.get(k).forEach(lane -> lane.accept(appointment));
+            }
+        }
+        return accepted;
+    }
+
+    private static Lane lane(Map<List<Object>, Lane> lanes, int dimension, Object key){
+        return lanes.computeIfAbsent(Arrays.asList(dimension, key), k -> new Lane(dimension, key));
+    }
+
+    private List<Appointment> findStored(Lane lane){
+        List<Appointment> found = new ArrayList<>();
+        if (!indexEnabled){
+            if (lane.dimension == ResourceLocks.DOCTOR){
+                found.addAll(appointmentRepository.findByDoctorWithin((Long) lane.key, lane.from, lane.to));
+            } else if (lane.dimension == ResourceLocks.PATIENT){
+                found.addAll(appointmentRepository.findByPatientWithin((Long) lane.key, lane.from, lane.to));
+            } else {
+                found.addAll(appointmentRepository.findByRoomWithin((String) lane.key, lane.from, lane.to));
+            }
+        } else {
+            int resource = lane.dimension == ResourceLocks.DOCTOR ? calendar.findDoctor((Long) lane.key)
+                    : lane.dimension == ResourceLocks.PATIENT ? calendar.findPatient((Long) lane.key)
+                    : calendar.findRoom((String) lane.key);
+            lookup(resource, Appointment.toStartMinute(lane.from), Appointment.toEndMinute(lane.to), found);
+        }
+        List<RecurringAppointment> repeating = findSeries(lane.dimension == ResourceLocks.DOCTOR ? (Long) lane.key : null,
+                lane.dimension == ResourceLocks.PATIENT ? (Long) lane.key : null,
+                lane.dimension == ResourceLocks.ROOM ? (String) lane.key : null, lane.from, lane.to);
+        for (RecurringAppointment recurring : repeating){
+            found.addAll(recurring.occurrencesWithin(lane.from, lane.to));
+        }
+        return found;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b){
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b){
+        return a.isBefore(b) ? a : b;
+    }
+
+    private int[] stripesFor(Appointment appointment){
+        return stripesFor(appointment.getDoctor(), appointment.getPatient(), appointment.getRoom());
+    }
+
+    private int[] stripesFor(Doctor doctor, Patient patient, Room room){
+        int[] stripes = new int[3];
+        int count = 0;
+        if (doctor != null){
+            stripes[count++] = locks.stripeFor(ResourceLocks.DOCTOR, doctor.getId());
+        }
+        if (patient != null){
+            stripes[count++] = locks.stripeFor(ResourceLocks.PATIENT, patient.getId());
+        }
+        if (room != null){
+            stripes[count++] = locks.stripeFor(ResourceLocks.ROOM, room.getRoomName());
+        }
+        return count == stripes.length ? stripes : Arrays.copyOf(stripes, count);
+    }
+
+    private List<Appointment> findCandidatesInIndex(Appointment appointment){
+        long start = appointment.getStartMinute();
+        long end = appointment.getEndMinute();
+
+        List<Appointment> found = new ArrayList<>();
+        if (isSaved(appointment.getDoctor())){
+            lookup(calendar.findDoctor(appointment.getDoctor().getId()), start, end, found);
+        }
+        if (isSaved(appointment.getPatient())){
+            lookup(calendar.findPatient(appointment.getPatient().getId()), start, end, found);
+        }
+        if (appointment.getRoom() != null){
+            lookup(calendar.findRoom(appointment.getRoom().getRoomName()), start, end, found);
+        }
+        return distinct(found);
+    }
+
+    private List<Appointment> findCandidatesInDatabase(Appointment appointment){
+        LocalDateTime startsAt = appointment.getStartsAt();
+        LocalDateTime finishesAt = appointment.getFinishesAt();
+
+        List<Appointment> found = new ArrayList<>();
+        if (isSaved(appointment.getDoctor())){
+            found.addAll(appointmentRepository.findByDoctorWithin(appointment.getDoctor().getId(), startsAt, finishesAt));
+        }
+        if (isSaved(appointment.getPatient())){
+            found.addAll(appointmentRepository.findByPatientWithin(appointment.getPatient().getId(), startsAt, finishesAt));
+        }
+        if (appointment.getRoom() != null){
+            found.addAll(appointmentRepository.findByRoomWithin(appointment.getRoom().getRoomName(), startsAt, finishesAt));
+        }
+        return distinct(found);
+    }
+
+    // Series of the doctor, patient or room, each given by key or null, with an
+    // occurrence within [from, to); the database only narrows them to their span
+    private List<RecurringAppointment> findSeries(Long doctorId, Long patientId, String roomName, LocalDateTime from, LocalDateTime to){
+        Map<Long, RecurringAppointment> found = new LinkedHashMap<>();
+        if (indexEnabled){
+            long start = Appointment.toStartMinute(from);
+            long end = Appointment.toEndMinute(to);
+            if (doctorId != null){
+                lookupSeries(calendar.findDoctor(doctorId), start, end, found);
+            }
+            if (patientId != null){
+                lookupSeries(calendar.findPatient(patientId), start, end, found);
+            }
+            if (roomName != null){
+                lookupSeries(calendar.findRoom(roomName), start, end, found);
+            }
+            return new ArrayList<>(found.values());
+        }
+        List<RecurringAppointment> spanning = new ArrayList<>();
+        if (doctorId != null){
+            spanning.addAll(recurringAppointmentRepository.findByDoctorWithin(doctorId, from, to));
+        }
+        if (patientId != null){
+            spanning.addAll(recurringAppointmentRepository.findByPatientWithin(patientId, from, to));
+        }
+        if (roomName != null){
+            spanning.addAll(recurringAppointmentRepository.findByRoomWithin(roomName, from, to));
+        }
+        for (RecurringAppointment recurring : spanning){
+            found.putIfAbsent(recurring.getId(), recurring);
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    // the same appointment may share the doctor, the patient and the room
+    private static List<Appointment> distinct(List<Appointment> found){
+        if (found.size() < 2){
+            return found;
+        }
+        Map<Long, Appointment> byId = new LinkedHashMap<>();
+        for (Appointment appointment : found){
+            byId.putIfAbsent(appointment.getId(), appointment);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    // Recurring series are not appointments and stay booked. Every stripe is
+    // held, so no booking can commit between the delete and the index rebuild
+    public void cancelAll(){
+        int[] stripes = locks.lockAll();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> appointmentRepository.deleteAllInBatch());
+            List<RecurringAppointment> kept = new ArrayList<>(series.values());
+            clearIndex();
+            kept.forEach(this::index);
+            queryCache.invalidateAll();
+            resourceVersions.changed(ResourceVersions.APPOINTMENTS);
+        } finally {
+            locks.unlock(stripes);
+        }
+    }
+
+    // Every delete-all is a few set-based statements in one transaction: the
+    // appointments and series referencing the rows go first, then the rows
+    // themselves. As in cancelAll, every stripe is held until the index agrees
+    @CacheEvict(cacheNames = CacheConfiguration.DOCTORS, allEntries = true)
+    public void removeAllDoctors(){
+        int[] stripes = locks.lockAll();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                appointmentRepository.deleteAllWithDoctor();
+                recurringAppointmentRepository.deleteAllWithDoctor();
+                doctorRepository.deleteAllInBatch();
+            });
+            unindexIf(appointment -> appointment.getDoctor() != null);
+            unindexSeriesIf(recurring -> recurring.getDoctor() != null);
+            queryCache.invalidateAll();
+            changed(ResourceVersions.DOCTORS);
+        } finally {
+            locks.unlock(stripes);
+        }
+    }
+
+    @CacheEvict(cacheNames = CacheConfiguration.PATIENTS, allEntries = true)
+    public void removeAllPatients(){
+        int[] stripes = locks.lockAll();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                appointmentRepository.deleteAllWithPatient();
+                recurringAppointmentRepository.deleteAllWithPatient();
+                patientRepository.deleteAllInBatch();
+            });
+            unindexIf(appointment -> appointment.getPatient() != null);
+            unindexSeriesIf(recurring -> recurring.getPatient() != null);
+            queryCache.invalidateAll();
+            changed(ResourceVersions.PATIENTS);
+        } finally {
+            locks.unlock(stripes);
+        }
+    }
+
+    @CacheEvict(cacheNames = CacheConfiguration.ROOMS, allEntries = true)
+    public void removeAllRooms(){
+        int[] stripes = locks.lockAll();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                appointmentRepository.deleteAllWithRoom();
+                recurringAppointmentRepository.deleteAllWithRoom();
+                roomRepository.deleteAllInBatch();
+            });
+            unindexIf(appointment -> appointment.getRoom() != null);
+            unindexSeriesIf(recurring -> recurring.getRoom() != null);
+            queryCache.invalidateAll();
+            changed(ResourceVersions.ROOMS);
+        } finally {
+            locks.unlock(stripes);
+        }
+    }
+
+    private void index(Appointment appointment){
+        long start = appointment.getStartMinute();
+        long end = appointment.getEndMinute();
+        Appointment previous = appointments.put(appointment.getId(), appointment);
+        if (previous != null && previous != appointment){
+            remove(previous);
+        }
+        if (isSaved(appointment.getDoctor())){
+            calendar.timeline(calendar.doctor(appointment.getDoctor().getId())).insert(start, end, appointment.getId());
+        }
+        if (isSaved(appointment.getPatient())){
+            calendar.timeline(calendar.patient(appointment.getPatient().getId())).insert(start, end, appointment.getId());
+        }
+        if (appointment.getRoom() != null){
+            calendar.timeline(calendar.room(appointment.getRoom().getRoomName())).insert(start, end, appointment.getId());
+        }
+    }
+
+    private void index(RecurringAppointment recurring){
+        RecurringAppointment previous = series.put(recurring.getId(), recurring);
+        if (previous != null){
+            remove(previous);
+        }
+        long start = recurring.getStartMinute();
+        long end = recurring.getEndMinute();
+        long period = recurring.getPeriodMinutes();
+        long occurrences = recurring.getOccurrences();
+        if (isSaved(recurring.getDoctor())){
+            calendar.timeline(calendar.doctor(recurring.getDoctor().getId())).insertRecurring(start, end, period, occurrences, recurring.getId());
+        }
+        if (isSaved(recurring.getPatient())){
+            calendar.timeline(calendar.patient(recurring.getPatient().getId())).insertRecurring(start, end, period, occurrences, recurring.getId());
+        }
+        if (recurring.getRoom() != null){
+            calendar.timeline(calendar.room(recurring.getRoom().getRoomName())).insertRecurring(start, end, period, occurrences, recurring.getId());
+        }
+    }
+
+    private void unindexSeries(long id){
+        RecurringAppointment recurring = series.remove(id);
+        if (recurring != null){
+            remove(recurring);
+        }
+    }
+
+    private void unindexSeriesIf(Predicate<RecurringAppointment> removed){
+        for (RecurringAppointment recurring : series.values()){
+            if (removed.test(recurring)){
+                unindexSeries(recurring.getId());
+            }
+        }
+    }
+
+    private Appointment unindex(long id){
+        Appointment appointment = appointments.remove(id);
+        if (appointment != null){
+            remove(appointment);
+        }
+        return appointment;
+    }
+
+    /**
+     * Deletes the doctor with a single statement. Appointments and series still
+     * booked with the doctor are left alone: the foreign key rejects the delete
+     * and the {@link DataIntegrityViolationException} reaches the caller.
+     */
+    @CacheEvict(cacheNames = CacheConfiguration.DOCTORS, key = "#id")
+    public boolean removeDoctor(long id){
+        int deleted = new TransactionTemplate(transactionManager).execute(status -> doctorRepository.deleteOneById(id));
+        if (deleted > 0){
+            resourceVersions.changed(ResourceVersions.DOCTORS);
+        }
+        return deleted > 0;
+    }
+
+    // Like removeDoctor, rejected while the patient has appointments or series
+    @CacheEvict(cacheNames = CacheConfiguration.PATIENTS, key = "#id")
+    public boolean removePatient(long id){
+        int deleted = new TransactionTemplate(transactionManager).execute(status -> patientRepository.deleteOneById(id));
+        if (deleted > 0){
+            resourceVersions.changed(ResourceVersions.PATIENTS);
+        }
+        return deleted > 0;
+    }
+
+    // Like removeDoctor, rejected while the room has appointments or series
+    @CacheEvict(cacheNames = CacheConfiguration.ROOMS, key = "#roomName")
+    public boolean removeRoom(String roomName){
+        int deleted = new TransactionTemplate(transactionManager).execute(status -> roomRepository.deleteOneByRoomName(roomName));
+        if (deleted > 0){
+            resourceVersions.changed(ResourceVersions.ROOMS);
+        }
+        return deleted > 0;
+    }
+
+    // removing a resource also deletes its appointments
+    private void changed(String resources){
+        resourceVersions.changed(resources);
+        resourceVersions.changed(ResourceVersions.APPOINTMENTS);
+    }
+
+    // Collections that gain rows when the appointments are saved: always the
+    // appointments, plus doctors and patients without an id and rooms that
+    // have no bookings yet (the name may be new, so the room is assumed changed)
+    private List<String> createdBy(List<Appointment> saving){
+        List<String> created = new ArrayList<>();
+        created.add(ResourceVersions.APPOINTMENTS);
+        for (Appointment appointment : saving){
+            if (appointment.getDoctor() != null && appointment.getDoctor().getId() == 0 && !created.contains(ResourceVersions.DOCTORS)){
+                created.add(ResourceVersions.DOCTORS);
+            }
+            if (appointment.getPatient() != null && appointment.getPatient().getId() == 0 && !created.contains(ResourceVersions.PATIENTS)){
+                created.add(ResourceVersions.PATIENTS);
+            }
+            if (appointment.getRoom() != null && !isBooked(appointment.getRoom().getRoomName()) && !created.contains(ResourceVersions.ROOMS)){
+                created.add(ResourceVersions.ROOMS);
+            }
+        }
+        return created;
+    }
+
+    private boolean isBooked(String roomName){
+        Timeline timeline = calendar.timeline(calendar.findRoom(roomName));
+        return timeline != null && !timeline.isEmpty();
+    }
+
+    // Without the index the deleted appointments are unknown, so nothing cached can be kept
+    private void invalidate(List<Appointment> removed){
+        if (!indexEnabled){
+            queryCache.invalidateAll();
+            return;
+        }
+        removed.forEach(queryCache::invalidate);
+    }
+
+    private void unindexIf(Predicate<Appointment> removed){
+        for (Appointment appointment : appointments.values()){
+            if (removed.test(appointment)){
+                unindex(appointment.getId());
+            }
+        }
+    }
+
+    private void remove(Appointment appointment){
+        long start = appointment.getStartMinute();
+        if (appointment.getDoctor() != null){
+            remove(calendar.findDoctor(appointment.getDoctor().getId()), start, appointment.getId());
+        }
+        if (appointment.getPatient() != null){
+            remove(calendar.findPatient(appointment.getPatient().getId()), start, appointment.getId());
+        }
+        if (appointment.getRoom() != null){
+            remove(calendar.findRoom(appointment.getRoom().getRoomName()), start, appointment.getId());
+        }
+    }
+
+    // doctors and patients are told apart by id, which unsaved ones lack
+    private static boolean isSaved(Doctor doctor){
+        return doctor != null && doctor.getId() != 0;
+    }
+
+    private static boolean isSaved(Patient patient){
+        return patient != null && patient.getId() != 0;
+    }
+
+    private static Long idOf(Doctor doctor){
+        return isSaved(doctor) ? doctor.getId() : null;
+    }
+
+    private static Long idOf(Patient patient){
+        return isSaved(patient) ? patient.getId() : null;
+    }
+
+    private static String nameOf(Room room){
+        return room == null ? null : room.getRoomName();
+    }
+
+    private void clearIndex(){
+        appointments.clear();
+        series.clear();
+        calendar.clear();
+    }
+
+    private void lookup(int resource, long from, long to, List<Appointment> found){
+        Timeline timeline = calendar.timeline(resource);
+        if (timeline != null){
+            timeline.forEachOverlapping(from, to, id -> {
+                Appointment appointment = appointments.get(id);
+                if (appointment != null){
+                    found.add(appointment);
+                }
+            });
+        }
+    }
+
+    private void remove(RecurringAppointment recurring){
+        if (recurring.getDoctor() != null){
+            removeSeries(calendar.findDoctor(recurring.getDoctor().getId()), recurring.getId());
+        }
+        if (recurring.getPatient() != null){
+            removeSeries(calendar.findPatient(recurring.getPatient().getId()), recurring.getId());
+        }
+        if (recurring.getRoom() != null){
+            removeSeries(calendar.findRoom(recurring.getRoom().getRoomName()), recurring.getId());
+        }
+    }
+
+    private void lookupSeries(int resource, long from, long to, Map<Long, RecurringAppointment> found){
+        Timeline timeline = calendar.timeline(resource);
+        if (timeline != null){
+            timeline.forEachRecurring(from, to, id -> {
+                RecurringAppointment recurring = series.get(id);
+                if (recurring != null){
+                    found.putIfAbsent(id, recurring);
+                }
+            });
+        }
+    }
+
+    private void removeSeries(int resource, long id){
+        Timeline timeline = calendar.timeline(resource);
+        if (timeline != null){
+            timeline.removeRecurring(id);
+        }
+    }
+
+    private void remove(int resource, long start, long id){
+        Timeline timeline = calendar.timeline(resource);
+        if (timeline != null){
+            timeline.remove(start, id);
+        }
+    }
+
+    // The bookings of one doctor, patient or room a batch sweep walks past. An
+    // item is clear of them when it starts no earlier than every interval
+    // before it finishes and ends no later than the next stored one starts
+    private static final class Lane {
+
+        final int dimension;
+        final Object key;
+        LocalDateTime from;
+        LocalDateTime to;
+        List<Appointment> stored;
+        int next;
+        LocalDateTime storedFinish = LocalDateTime.MIN;
+        LocalDateTime batchFinish = LocalDateTime.MIN;
+
+        Lane(int dimension, Object key){
+            this.dimension = dimension;
+            this.key = key;
+        }
+
+        // items arrive in start order, so the first one fixes the start of the window
+        void cover(Appointment appointment){
+            if (from == null){
+                from = appointment.getStartsAt();
+                to = appointment.getFinishesAt();
+            }
+            to = max(to, appointment.getFinishesAt());
+        }
+
+        boolean conflictsWithStored(Appointment appointment){
+            while (next < stored.size() && !stored.get(next).getStartsAt().isAfter(appointment.getStartsAt())){
+                storedFinish = max(storedFinish, stored.get(next++).getFinishesAt());
+            }
+            return appointment.getStartsAt().isBefore(storedFinish)
+                    || (next < stored.size() && stored.get(next).getStartsAt().isBefore(appointment.getFinishesAt()));
+        }
+
+        boolean conflictsWithBatch(Appointment appointment){
+            return appointment.getStartsAt().isBefore(batchFinish);
+        }
+
+        void accept(Appointment appointment){
+            batchFinish = max(batchFinish, appointment.getFinishesAt());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.demo.services;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import com.example.demo.entities.RecurringAppointment;
+
+/**
+ * The bookings of one doctor, patient or room as parallel primitive arrays
+ * ordered by (start, id): epoch-minute starts and ends, appointment ids and
+ * the running maximum of the ends. Intervals are half-open, so a booking may
+ * start the minute another one finishes.
+ *
+ * The running maximum never decreases, so an overlap check is one binary
+ * search plus one comparison and allocates nothing. Inserting or removing
+ * shifts the tail of the arrays; appending in start order is constant time.
+ *
+ * Recurring series are kept apart, unexpanded, as their first occurrence,
+ * period, occurrence count and id. A resource has few of them, and whether
+ * one occurs within a window is constant-time arithmetic, so they are scanned.
+ */
+public class Timeline {
+
+    private static final int SERIES_FIELDS = 5;
+
+    private long[] starts;
+    private long[] ends;
+    private long[] ids;
+    private long[] maxEnds;
+    private int size;
+    // start, end, period, occurrences and id of each series, one after the other
+    private long[] series = new long[0];
+    private int seriesSize;
+
+    public Timeline(){
+        this(8);
+    }
+
+    public Timeline(int capacity){
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.ids = new long[capacity];
+        this.maxEnds = new long[capacity];
+    }
+
+    public synchronized void insert(long start, long end, long id){
+        if (size == starts.length){
+            grow();
+        }
+        int at = after(start, id);
+        int moved = size - at;
+        System.arraycopy(starts, at, starts, at + 1, moved);
+        System.arraycopy(ends, at, ends, at + 1, moved);
+        System.arraycopy(ids, at, ids, at + 1, moved);
+        starts[at] = start;
+        ends[at] = end;
+        ids[at] = id;
+        size++;
+        refresh(at);
+    }
+
+    public synchronized boolean remove(long start, long id){
+        int at = after(start, id) - 1;
+        if (at < 0 || starts[at] != start || ids[at] != id){
+            return false;
+        }
+        int moved = size - at - 1;
+        System.arraycopy(starts, at + 1, starts, at, moved);
+        System.arraycopy(ends, at + 1, ends, at, moved);
+        System.arraycopy(ids, at + 1, ids, at, moved);
+        size--;
+        refresh(at);
+        return true;
+    }
+
+    public synchronized void insertRecurring(long start, long end, long period, long occurrences, long id){
+        if (series.length == SERIES_FIELDS * seriesSize){
+            series = Arrays.copyOf(series, Math.max(SERIES_FIELDS, series.length * 2));
+        }
+        int at = SERIES_FIELDS * seriesSize++;
+        series[at] = start;
+        series[at + 1] = end;
+        series[at + 2] = period;
+        series[at + 3] = occurrences;
+        series[at + 4] = id;
+    }
+
+    public synchronized boolean removeRecurring(long id){
+        for (int at = 0; at < SERIES_FIELDS * seriesSize; at += SERIES_FIELDS){
+            if (series[at + 4] == id){
+                int last = SERIES_FIELDS * --seriesSize;
+                System.arraycopy(series, last, series, at, SERIES_FIELDS);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True when a booking or an occurrence of a series of this timeline shares
+     * at least one minute with [from, to).
+     */
+    public synchronized boolean overlaps(long from, long to){
+        int candidates = startingBefore(to);
+        if (candidates > 0 && maxEnds[candidates - 1] > from){
+            return true;
+        }
+        for (int at = 0; at < SERIES_FIELDS * seriesSize; at += SERIES_FIELDS){
+            if (occursWithin(at, from, to)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the id of every booking sharing at least one minute with [from, to),
+     * in start order.
+     */
+    public synchronized void forEachOverlapping(long from, long to, LongConsumer action){
+        int candidates = startingBefore(to);
+        for (int i = firstReaching(from, candidates); i < candidates; i++){
+            if (ends[i] > from){
+                action.accept(ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Passes the id of every series with an occurrence sharing at least one
+     * minute with [from, to).
+     */
+    public synchronized void forEachRecurring(long from, long to, LongConsumer action){
+        for (int at = 0; at < SERIES_FIELDS * seriesSize; at += SERIES_FIELDS){
+            if (occursWithin(at, from, to)){
+                action.accept(series[at + 4]);
+            }
+        }
+    }
+
+    public synchronized long[] ids(){
+        return Arrays.copyOf(ids, size);
+    }
+
+    public synchronized long[] recurringIds(){
+        long[] found = new long[seriesSize];
+        for (int i = 0; i < seriesSize; i++){
+            found[i] = series[SERIES_FIELDS * i + 4];
+        }
+        return found;
+    }
+
+    public synchronized int size(){
+        return size;
+    }
+
+    public synchronized boolean isEmpty(){
+        return size == 0 && seriesSize == 0;
+    }
+
+    private boolean occursWithin(int at, long from, long to){
+        return RecurringAppointment.occursWithin(series[at], series[at + 1], series[at + 2], series[at + 3], from, to);
+    }
+
+    // number of bookings ordered at or before (start, id)
+    private int after(long start, long id){
+        int low = 0;
+        int high = size;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < start || (starts[mid] == start && ids[mid] <= id)){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int startingBefore(long to){
+        int low = 0;
+        int high = size;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < to){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // first position whose running maximum end is past from; nothing before it can overlap
+    private int firstReaching(long from, int limit){
+        int low = 0;
+        int high = limit;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (maxEnds[mid] <= from){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void refresh(int from){
+        long max = from == 0 ? Long.MIN_VALUE : maxEnds[from - 1];
+        for (int i = from; i < size; i++){
+            max = Math.max(max, ends[i]);
+            maxEnds[i] = max;
+        }
+    }
+
+    private void grow(){
+        int capacity = Math.max(8, starts.length * 2);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        maxEnds = Arrays.copyOf(maxEnds, capacity);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.SchedulingService;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class AppointmentBookingStressTest {
+
+    private static final int REQUESTS = 2000;
+    private static final int CLIENTS = 64;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    // a spy only to widen the gap between the bulk delete and the index rebuild
+    @SpyBean
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
+    private final List<Doctor> doctors = new ArrayList<>();
+    private final List<Patient> patients = new ArrayList<>();
+    private final List<Room> rooms = new ArrayList<>();
+
+    @BeforeEach
+    void setUp(){
+        for (int i = 0; i < 8; i++){
+            doctors.add(doctorRepository.save(new Doctor("Doctor", "Number " + i, 40, "doctor" + i + "@hospital.accwe")));
+            patients.add(patientRepository.save(new Patient("Patient", "Number " + i, 30, "patient" + i + "@email.com")));
+            rooms.add(roomRepository.save(new Room("Stress room " + i)));
+        }
+    }
+
+    @AfterEach
+    void tearDown(){
+        schedulingService.cancelAll();
+        doctorRepository.deleteAll(doctors);
+        patientRepository.deleteAll(patients);
+        roomRepository.deleteAll(rooms);
+    }
+
+    @Test
+    void shouldNeverDoubleBookUnderConcurrentRequests() throws Exception {
+        LocalDateTime day = LocalDateTime.of(2030, 1, 7, 8, 0);
+        Random random = new Random(7);
+
+        List<Callable<HttpStatus>> requests = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++){
+            // half-hour slots of one hour so neighbouring requests partially overlap
+            LocalDateTime startsAt = day.plusMinutes(30L * random.nextInt(16));
+            Appointment appointment = new Appointment(
+                    patients.get(random.nextInt(patients.size())),
+                    doctors.get(random.nextInt(doctors.size())),
+                    rooms.get(random.nextInt(rooms.size())),
+                    startsAt, startsAt.plusHours(1));
+            requests.add(() -> {
+                ResponseEntity<Void> response = restTemplate.postForEntity("/api/appointment", appointment, Void.class);
+                return response.getStatusCode();
+            });
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        int accepted = 0;
+        try {
+            for (Future<HttpStatus> status : clients.invokeAll(requests)){
+                assertThat(status.get()).isIn(HttpStatus.OK, HttpStatus.NOT_ACCEPTABLE);
+                if (status.get() == HttpStatus.OK){
+                    accepted++;
+                }
+            }
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        List<Appointment> booked = appointmentRepository.findAll();
+        assertThat(booked).hasSize(accepted);
+        assertThat(accepted).isGreaterThan(0);
+
+        for (int i = 0; i < booked.size(); i++){
+            for (int j = i + 1; j < booked.size(); j++){
+                Appointment a = booked.get(i);
+                Appointment b = booked.get(j);
+                assertThat(a.overlaps(b) || b.overlaps(a))
+                        .as("appointments %d and %d are double-booked", a.getId(), b.getId())
+                        .isFalse();
+            }
+        }
+    }
+
+    @Test
+    void shouldKeepEveryStoredBookingIndexedWhileDeletingAll() throws Exception {
+        doAnswer(invocation -> {
+            new SimpleJpaRepository<>(Appointment.class, entityManager).deleteAllInBatch();
+            Thread.sleep(5);
+            return null;
+        }).when(appointmentRepository).deleteAllInBatch();
+        doAnswer(invocation -> {
+            int deleted = entityManager.createQuery("delete from Appointment a where a.room is not null").executeUpdate();
+            Thread.sleep(5);
+            return deleted;
+        }).when(appointmentRepository).deleteAllWithRoom();
+        LocalDateTime day = LocalDateTime.of(2030, 1, 7, 8, 0);
+        Random random = new Random(11);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++){
+            if (i % 20 == 0){
+                tasks.add(() -> {
+                    schedulingService.cancelAll();
+                    return false;
+                });
+                continue;
+            }
+            if (i % 20 == 10){
+                tasks.add(() -> {
+                    schedulingService.removeAllRooms();
+                    return false;
+                });
+                continue;
+            }
+            LocalDateTime startsAt = day.plusMinutes(60L * random.nextInt(24 * 365));
+            Appointment appointment = new Appointment(
+                    detached(patients.get(random.nextInt(patients.size()))),
+                    detached(doctors.get(random.nextInt(doctors.size()))),
+                    new Room(rooms.get(random.nextInt(rooms.size())).getRoomName()),
+                    startsAt, startsAt.plusHours(1));
+            tasks.add(() -> schedulingService.book(appointment).isPresent());
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            for (Future<Boolean> done : clients.invokeAll(tasks)){
+                done.get();
+            }
+        } finally {
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        // a row left out of the index would let an overlapping booking through
+        for (Appointment stored : appointmentRepository.findAll()){
+            Appointment sameRoom = new Appointment(null, null, new Room(stored.getRoom().getRoomName()),
+                    stored.getStartsAt(), stored.getFinishesAt());
+            assertThat(schedulingService.conflicts(sameRoom))
+                    .as("appointment %d is stored but not indexed", stored.getId())
+                    .isTrue();
+        }
+    }
+
+    private static Doctor detached(Doctor doctor){
+        Doctor copy = new Doctor(doctor.getFirstName(), doctor.getLastName(), doctor.getAge(), doctor.getEmail());
+        copy.setId(doctor.getId());
+        return copy;
+    }
+
+    private static Patient detached(Patient patient){
+        Patient copy = new Patient(patient.getFirstName(), patient.getLastName(), patient.getAge(), patient.getEmail());
+        copy.setId(patient.getId());
+        return copy;
+    }
+}
@@ -1,49 +1,97 @@
 package com.example.demo;
 
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java.time.LocalDateTime;
 import java.time.format.*;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 import com.example.demo.controllers.AppointmentController;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.dto.AppointmentView;
+import com.example.demo.services.AppointmentExporter;
+import com.example.demo.services.AppointmentQueryCache;
+import com.example.demo.services.BookingMetrics;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(AppointmentController.class)
+@Import({SchedulingService.class, AppointmentQueryCache.class, ResourceVersions.class, BookingMetrics.class})
 class AppointmentControllerUnitTest{
 
     @MockBean
     private AppointmentRepository appointmentRepository;
 
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private RecurringAppointmentRepository recurringAppointmentRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private AppointmentExporter appointmentExporter;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
     @Autowired 
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @BeforeEach
+    void setUp(){
+        when(appointmentRepository.save(any(Appointment.class))).then(returnsFirstArg());
+        when(appointmentRepository.saveAll(anyList())).then(returnsFirstArg());
+        schedulingService.seed();
+    }
+
     @Test
     void shouldCreateAppointment() throws Exception {
         
@@ -108,10 +156,6 @@ class AppointmentControllerUnitTest{
 
 
 
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        appointments.add(appointment);
-        
-        when(appointmentRepository.findAll()).thenReturn(appointments);
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment2)))
                 .andExpect(status().isNotAcceptable());
@@ -147,10 +191,6 @@ class AppointmentControllerUnitTest{
 
 
 
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        appointments.add(appointment);
-        
-        when(appointmentRepository.findAll()).thenReturn(appointments);
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment2)))
                 .andExpect(status().isOk());
@@ -158,10 +198,123 @@ class AppointmentControllerUnitTest{
 
     }
     
+    @Test
+    void shouldNotCreateAppointmentConflictingWithStoredAppointment() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        doctor2.setId(2);
+        patient2.setId(2);
+
+        Appointment stored = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        stored.setId(1);
+        Appointment appointment = new Appointment(patient2, doctor2, room, startsAt.plusMinutes(30), finishesAt.plusMinutes(30));
+
+        when(appointmentRepository.findAll()).thenReturn(Collections.singletonList(stored));
+        schedulingService.seed();
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldCreateAppointmentAfterConflictingOneIsDeleted() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment stored = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        stored.setId(1);
+
+        when(appointmentRepository.findAll()).thenReturn(Collections.singletonList(stored));
+        when(appointmentRepository.deleteOneById(stored.getId())).thenReturn(1);
+        schedulingService.seed();
+
+        mockMvc.perform(delete("/api/appointments/" + stored.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(stored)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldBookBatchReportingEachItem() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment stored = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        stored.setId(1);
+        when(appointmentRepository.findAll()).thenReturn(Collections.singletonList(stored));
+        schedulingService.seed();
+        AtomicLong ids = new AtomicLong(1);
+        when(appointmentRepository.saveAll(anyList())).then(invocation -> {
+            List<Appointment> saving = invocation.getArgument(0);
+            saving.forEach(appointment -> appointment.setId(ids.incrementAndGet()));
+            return saving;
+        });
+
+        List<Appointment> batch = Arrays.asList(
+                new Appointment(patient, doctor, room, startsAt.plusMinutes(30), finishesAt.plusMinutes(30)),
+                new Appointment(patient, doctor, room2, startsAt, finishesAt),
+                new Appointment(patient, doctor, room2, startsAt.plusMinutes(30), finishesAt.plusMinutes(30)),
+                new Appointment(patient, doctor, room2, finishesAt, startsAt),
+                new Appointment(patient, doctor, room2, startsAt.minusHours(1), startsAt),
+                new Appointment(patient, doctor, room, finishesAt, finishesAt.plusHours(1)));
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(6))
+                .andExpect(jsonPath("$[0].status").value("REJECTED"))
+                .andExpect(jsonPath("$[0].reason").value("conflicts with a booked appointment"))
+                .andExpect(jsonPath("$[1].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[2].status").value("REJECTED"))
+                .andExpect(jsonPath("$[2].reason").value("conflicts with another appointment of the batch"))
+                .andExpect(jsonPath("$[3].status").value("REJECTED"))
+                .andExpect(jsonPath("$[3].reason").value("invalid time range"))
+                .andExpect(jsonPath("$[4].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[5].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[5].index").value(5));
+
+        // accepted items are indexed, so single bookings see them
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch.get(2))))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldNotBookEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldGetNoAppointments() throws Exception{
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        List<AppointmentView> appointments = new ArrayList<AppointmentView>();
+        when(appointmentRepository.findAllViews()).thenReturn(appointments);
         mockMvc.perform(get("/api/appointments"))
                 .andExpect(status().isNoContent());
                 
@@ -186,16 +339,375 @@ class AppointmentControllerUnitTest{
         Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
         Appointment appointment2 = new Appointment(patient2, doctor2, room, startsAt2, finishesAt2);
 
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        appointments.add(appointment);
-        appointments.add(appointment2);
+        List<AppointmentView> appointments = new ArrayList<AppointmentView>();
+        appointments.add(AppointmentView.of(appointment));
+        appointments.add(AppointmentView.of(appointment2));
 
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        when(appointmentRepository.findAllViews()).thenReturn(appointments);
         mockMvc.perform(get("/api/appointments"))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[1].doctorFirstName").value("Miren"))
+                .andExpect(jsonPath("$[1].roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[1].doctor").doesNotExist());
                 
     }
 
+    @Test
+    void shouldGetAppointmentsAfterCursor() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:00 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:00 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        appointment.setId(11);
+
+        when(appointmentRepository.findViewsByIdGreaterThan(10, PageRequest.of(0, 1)))
+                .thenReturn(Collections.singletonList(AppointmentView.of(appointment)));
+        mockMvc.perform(get("/api/appointments?after=10&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(11))
+                .andExpect(header().string("Link", "<http://localhost/api/appointments?limit=1&after=11>; rel=\"next\""));
+
+        mockMvc.perform(get("/api/appointments").param("after", "11").param("limit", "1"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void shouldNotGetAppointmentsWithInvalidLimit() throws Exception{
+        mockMvc.perform(get("/api/appointments").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldGetDoctorScheduleForOneDay() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime from = LocalDateTime.parse("00:00 25/04/2023", formatter);
+        LocalDateTime to = LocalDateTime.parse("00:00 26/04/2023", formatter);
+
+        doctor.setId(3);
+        Appointment appointment = new Appointment(patient, doctor, room, from.plusHours(9), from.plusHours(10));
+
+        AppointmentFilter filter = new AppointmentFilter(3L, null, null, from, to);
+        when(appointmentRepository.findFiltered(filter, 0, PageRequest.of(0, 100)))
+                .thenReturn(Collections.singletonList(AppointmentView.of(appointment)));
+
+        mockMvc.perform(get("/api/appointments")
+                .param("doctorId", "3")
+                .param("from", "00:00 25/04/2023")
+                .param("to", "00:00 26/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].startsAt").value("09:00 25/04/2023"))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void shouldLinkTheNextPageOfAFullFilteredListing() throws Exception{
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(3);
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        List<AppointmentView> page = new ArrayList<>();
+        for (int i = 1; i <= 100; i++){
+            Appointment appointment = new Appointment(null, doctor, new Room("Dermatology"), startsAt.plusHours(i), startsAt.plusHours(i + 1));
+            appointment.setId(i);
+            page.add(AppointmentView.of(appointment));
+        }
+        AppointmentFilter filter = new AppointmentFilter(3L, null, null, null, null);
+        when(appointmentRepository.findFiltered(filter, 0, PageRequest.of(0, 100))).thenReturn(page);
+        when(appointmentRepository.findFiltered(filter, 100, PageRequest.of(0, 100))).thenReturn(page.subList(0, 1));
+
+        // without after or limit a filtered listing is the first page of 100
+        mockMvc.perform(get("/api/appointments?doctorId=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(100))
+                .andExpect(header().string("Link", "<http://localhost/api/appointments?doctorId=3&after=100>; rel=\"next\""));
+        mockMvc.perform(get("/api/appointments").param("doctorId", "3").param("after", "100"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void shouldServeDoctorScheduleFromCacheUntilThatDoctorBooks() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime from = LocalDateTime.parse("00:00 25/04/2023", formatter);
+        LocalDateTime to = LocalDateTime.parse("00:00 26/04/2023", formatter);
+
+        doctor.setId(3);
+        doctor2.setId(4);
+        patient.setId(1);
+        Appointment appointment = new Appointment(patient, doctor, room, from.plusHours(9), from.plusHours(10));
+
+        AppointmentFilter filter = new AppointmentFilter(3L, null, null, from, to);
+        when(appointmentRepository.findFiltered(filter, 0, PageRequest.of(0, 100)))
+                .thenReturn(Collections.singletonList(AppointmentView.of(appointment)));
+
+        for (int i = 0; i < 3; i++){
+            mockMvc.perform(get("/api/appointments")
+                    .param("doctorId", "3")
+                    .param("from", "00:00 25/04/2023")
+                    .param("to", "00:00 26/04/2023"))
+                    .andExpect(status().isOk());
+        }
+        verify(appointmentRepository, times(1)).findFiltered(filter, 0, PageRequest.of(0, 100));
+
+        // another doctor, patient and room: the cached schedule stays
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        patient2.setId(2);
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Appointment(patient2, doctor2, room2, from.plusHours(9), from.plusHours(10)))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments")
+                .param("doctorId", "3")
+                .param("from", "00:00 25/04/2023")
+                .param("to", "00:00 26/04/2023"))
+                .andExpect(status().isOk());
+        verify(appointmentRepository, times(1)).findFiltered(filter, 0, PageRequest.of(0, 100));
+
+        // the same doctor on another day does not touch this window either
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Appointment(patient2, doctor, room2, to.plusHours(9), to.plusHours(10)))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments")
+                .param("doctorId", "3")
+                .param("from", "00:00 25/04/2023")
+                .param("to", "00:00 26/04/2023"))
+                .andExpect(status().isOk());
+        verify(appointmentRepository, times(1)).findFiltered(filter, 0, PageRequest.of(0, 100));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Appointment(patient2, doctor, room2, from.plusHours(11), from.plusHours(12)))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments")
+                .param("doctorId", "3")
+                .param("from", "00:00 25/04/2023")
+                .param("to", "00:00 26/04/2023"))
+                .andExpect(status().isOk());
+        verify(appointmentRepository, times(2)).findFiltered(filter, 0, PageRequest.of(0, 100));
+    }
+
+    @Test
+    void shouldRefreshCachedAppointmentAfterItIsDeleted() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        Appointment stored = new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1));
+        stored.setId(7);
+
+        when(appointmentRepository.findAll()).thenReturn(Collections.singletonList(stored));
+        when(appointmentRepository.findViewById(7)).thenReturn(Optional.of(AppointmentView.of(stored)));
+        when(appointmentRepository.deleteOneById(7)).thenReturn(1);
+        schedulingService.seed();
+
+        mockMvc.perform(get("/api/appointments/7")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments/7")).andExpect(status().isOk());
+        verify(appointmentRepository, times(1)).findViewById(7);
+
+        mockMvc.perform(delete("/api/appointments/7")).andExpect(status().isOk());
+        when(appointmentRepository.findViewById(7)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/appointments/7")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldCachePagesButNotTheUnpagedListing() throws Exception{
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        Appointment appointment = new Appointment(null, doctor, new Room("Dermatology"), startsAt, startsAt.plusHours(1));
+        appointment.setId(5);
+        List<AppointmentView> views = Collections.singletonList(AppointmentView.of(appointment));
+        when(appointmentRepository.findAllViews()).thenReturn(views);
+        when(appointmentRepository.findViewsByIdGreaterThan(0, PageRequest.of(0, 10))).thenReturn(views);
+
+        for (int i = 0; i < 3; i++){
+            mockMvc.perform(get("/api/appointments")).andExpect(status().isOk());
+            mockMvc.perform(get("/api/appointments").param("limit", "10")).andExpect(status().isOk());
+        }
+        verify(appointmentRepository, times(3)).findAllViews();
+        verify(appointmentRepository, times(1)).findViewsByIdGreaterThan(0, PageRequest.of(0, 10));
+    }
+
+    @Test
+    void shouldAnswerNotModifiedUntilAppointmentsChange() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        doctor.setId(1);
+        patient.setId(1);
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1));
+        when(appointmentRepository.findAllViews()).thenReturn(Collections.singletonList(AppointmentView.of(appointment)));
+
+        String etag = mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+        verify(appointmentRepository, times(1)).findAllViews();
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForUnchangedAppointment() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1));
+        appointment.setId(9);
+        when(appointmentRepository.findViewById(9)).thenReturn(Optional.of(AppointmentView.of(appointment)));
+
+        mockMvc.perform(get("/api/appointments/9"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"9-0\""));
+
+        mockMvc.perform(get("/api/appointments/9").header("If-None-Match", "W/\"9-0\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/api/appointments/9").header("If-None-Match", "\"9-1\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldNotGetAppointmentsWithEmptyTimeWindow() throws Exception{
+        mockMvc.perform(get("/api/appointments")
+                .param("from", "10:00 25/04/2023")
+                .param("to", "09:00 25/04/2023"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldFindFreeSlotsOfDoctorAndRoom() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        doctor.setId(1);
+        doctor2.setId(2);
+
+        LocalDateTime day = LocalDateTime.of(2023, 4, 25, 0, 0);
+        List<Appointment> booked = Arrays.asList(
+                new Appointment(patient, doctor, new Room("Oncology"), day.withHour(9), day.withHour(10)),
+                new Appointment(patient, doctor2, new Room("Dermatology"), day.withHour(10).withMinute(30), day.withHour(11)),
+                new Appointment(patient, doctor, new Room("Cardiology"), day.withHour(11), day.withHour(12)));
+        for (int i = 0; i < booked.size(); i++){
+            booked.get(i).setId(i + 1);
+            assertThat(schedulingService.book(booked.get(i))).isPresent();
+        }
+
+        mockMvc.perform(get("/api/availability")
+                .param("doctorId", "1")
+                .param("room", "Dermatology")
+                .param("from", "08:00 25/04/2023")
+                .param("to", "13:00 25/04/2023")
+                .param("duration", "30"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].startsAt").value("08:00 25/04/2023"))
+                .andExpect(jsonPath("$[0].finishesAt").value("09:00 25/04/2023"))
+                .andExpect(jsonPath("$[1].startsAt").value("10:00 25/04/2023"))
+                .andExpect(jsonPath("$[1].finishesAt").value("10:30 25/04/2023"))
+                .andExpect(jsonPath("$[2].startsAt").value("12:00 25/04/2023"))
+                .andExpect(jsonPath("$[2].finishesAt").value("13:00 25/04/2023"));
+
+        mockMvc.perform(get("/api/availability")
+                .param("doctorId", "1")
+                .param("room", "Dermatology")
+                .param("from", "08:00 25/04/2023")
+                .param("to", "13:00 25/04/2023")
+                .param("duration", "45")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].startsAt").value("08:00 25/04/2023"))
+                .andExpect(jsonPath("$[0].minutes").value(60));
+
+        mockMvc.perform(get("/api/availability")
+                .param("room", "Oncology")
+                .param("from", "09:00 25/04/2023")
+                .param("to", "10:00 25/04/2023")
+                .param("duration", "15"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void shouldNotFindFreeSlotsForInvalidSearch() throws Exception{
+        mockMvc.perform(get("/api/availability")
+                .param("from", "08:00 25/04/2023")
+                .param("to", "13:00 25/04/2023")
+                .param("duration", "30"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/availability")
+                .param("doctorId", "1")
+                .param("from", "13:00 25/04/2023")
+                .param("to", "08:00 25/04/2023")
+                .param("duration", "30"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/availability")
+                .param("doctorId", "1")
+                .param("from", "08:00 25/04/2023")
+                .param("to", "13:00 25/04/2023")
+                .param("duration", "0"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/availability")
+                .param("doctorId", "1")
+                .param("from", "08:00 25/04/2023")
+                .param("to", "13:00 25/04/2023"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldStreamAppointmentsAsNdjson() throws Exception{
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"id\":1}\n{\"id\":2}\n".getBytes());
+            return null;
+        }).when(appointmentExporter).writeNdjson(any(OutputStream.class));
+
+        MvcResult result = mockMvc.perform(get("/api/appointments").accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"id\":1}\n{\"id\":2}\n"));
+    }
+
     @Test
     void shouldGetAppointmentById() throws Exception{
         Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
@@ -218,9 +730,10 @@ class AppointmentControllerUnitTest{
         assertThat(opt.get().getId()).isEqualTo(appointment.getId());
         assertThat(appointment.getId()).isEqualTo(1);
 
-        when(appointmentRepository.findById(appointment.getId())).thenReturn(opt);
+        when(appointmentRepository.findViewById(appointment.getId())).thenReturn(opt.map(AppointmentView::of));
         mockMvc.perform(get("/api/appointments/" + appointment.getId()))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patientLastName").value("Olaya"));
                 
     }
     
@@ -254,7 +767,7 @@ class AppointmentControllerUnitTest{
         assertThat(opt.get().getId()).isEqualTo(appointment.getId());
         assertThat(appointment.getId()).isEqualTo(1);
 
-        when(appointmentRepository.findById(appointment.getId())).thenReturn(opt);
+        when(appointmentRepository.deleteOneById(appointment.getId())).thenReturn(1);
         mockMvc.perform(delete("/api/appointments/" + appointment.getId()))
                 .andExpect(status().isOk());
                 
@@ -276,3 +789,165 @@ class AppointmentControllerUnitTest{
     }
 }
 
+@WebMvcTest(controllers = AppointmentController.class, properties = "scheduling.index.enabled=false")
+@Import({SchedulingService.class, AppointmentQueryCache.class, ResourceVersions.class, BookingMetrics.class})
+class AppointmentControllerWithoutIndexUnitTest{
+
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private RecurringAppointmentRepository recurringAppointmentRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private AppointmentExporter appointmentExporter;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp(){
+        when(appointmentRepository.save(any(Appointment.class))).then(returnsFirstArg());
+        when(appointmentRepository.saveAll(anyList())).then(returnsFirstArg());
+    }
+
+    @Test
+    void shouldNotCreateAppointmentConflictingInDatabase() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        doctor2.setId(2);
+        patient2.setId(2);
+
+        Appointment stored = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        stored.setId(1);
+        Appointment appointment = new Appointment(patient2, doctor2, room, startsAt, finishesAt);
+
+        when(appointmentRepository.findByRoomWithin(room.getRoomName(), startsAt, finishesAt)).thenReturn(Collections.singletonList(stored));
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldNotCreateAppointmentOnAnOccurrenceOfAStoredSeries() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime monday = LocalDateTime.of(2023, 4, 24, 19, 30);
+        LocalDateTime tenthMonday = monday.plusWeeks(10);
+
+        doctor2.setId(2);
+        patient2.setId(2);
+
+        RecurringAppointment stored = new RecurringAppointment(patient, doctor, room, monday, monday.plusHours(1),
+                RecurringAppointment.Frequency.WEEKLY, 1, null, 20);
+        stored.setId(1);
+
+        // the query narrows series to their span; the occurrences decide
+        when(recurringAppointmentRepository.findByRoomWithin(any(), any(), any())).thenReturn(Collections.singletonList(stored));
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Appointment(patient2, doctor2, room, tenthMonday, tenthMonday.plusHours(1)))))
+                .andExpect(status().isNotAcceptable());
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Appointment(patient2, doctor2, room, tenthMonday.plusDays(1), tenthMonday.plusDays(1).plusHours(1)))))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldBookBatchAgainstDatabase() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment stored = new Appointment(patient, doctor, room, startsAt.plusHours(2), finishesAt.plusHours(2));
+        stored.setId(1);
+
+        List<Appointment> batch = Arrays.asList(
+                new Appointment(patient, doctor, room, startsAt, finishesAt),
+                new Appointment(patient, doctor, room, startsAt.plusHours(1), finishesAt.plusHours(2)));
+
+        when(appointmentRepository.findByRoomWithin(room.getRoomName(), startsAt, finishesAt.plusHours(2)))
+                .thenReturn(Collections.singletonList(stored));
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$[1].status").value("REJECTED"));
+    }
+
+    @Test
+    void shouldCreateAppointmentWithoutConflictInDatabase() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldFindFreeSlotsAgainstDatabase() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(1);
+
+        LocalDateTime from = LocalDateTime.of(2023, 4, 25, 8, 0);
+        LocalDateTime to = LocalDateTime.of(2023, 4, 25, 13, 0);
+        Appointment inOncology = new Appointment(patient, doctor, new Room("Oncology"), from.plusHours(1), from.plusHours(2));
+        Appointment inDermatology = new Appointment(patient, null, new Room("Dermatology"), from.plusMinutes(90), from.plusHours(4));
+
+        when(appointmentRepository.findByDoctorWithin(1, from, to)).thenReturn(Collections.singletonList(inOncology));
+        when(appointmentRepository.findByRoomWithin("Dermatology", from, to)).thenReturn(Collections.singletonList(inDermatology));
+        mockMvc.perform(get("/api/availability")
+                .param("doctorId", "1")
+                .param("room", "Dermatology")
+                .param("from", "08:00 25/04/2023")
+                .param("to", "13:00 25/04/2023")
+                .param("duration", "60"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].startsAt").value("08:00 25/04/2023"))
+                .andExpect(jsonPath("$[1].startsAt").value("12:00 25/04/2023"))
+                .andExpect(jsonPath("$[1].finishesAt").value("13:00 25/04/2023"));
+    }
+}
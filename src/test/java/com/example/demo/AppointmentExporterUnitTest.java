@@ -0,0 +1,57 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentExporter;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({AppointmentExporter.class, JacksonConfiguration.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class AppointmentExporterUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AppointmentExporter appointmentExporter;
+
+    @Test
+    void should_write_one_json_line_per_appointment(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+        for (int i = 0; i < 3; i++){
+            entityManager.persist(new Appointment(patient, doctor, room, startsAt.plusHours(i), startsAt.plusHours(i + 1)));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        appointmentExporter.writeNdjson(out);
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).contains("\"startsAt\":\"19:30 24/04/2023\"").contains("\"roomName\":\"Dermatology\"");
+        assertThat(lines[2]).contains("\"startsAt\":\"21:30 24/04/2023\"");
+    }
+}
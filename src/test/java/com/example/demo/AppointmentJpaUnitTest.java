@@ -2,24 +2,33 @@ package com.example.demo;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.EntityManagerFactory;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.dto.AppointmentView;
 
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureTestDatabase(replace=Replace.NONE)
 class AppointmentJpaUnitTest {
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Autowired
     private TestEntityManager entityManager;
 
@@ -257,5 +266,189 @@ class AppointmentJpaUnitTest {
         Iterable appointments = repoAppointments.findAll();
         assertThat(appointments).isEmpty();
     }
-    
+
+    @Test
+    void should_find_appointments_within_window_by_doctor_patient_and_room(){
+        Patient patient1 = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Mariela", "Eric", 42, "m.eric@email.com");
+
+        Doctor doctor1 = new Doctor ("Carina", "Zaray", 49, "c.zaray@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Reyna", "Cayetana", 28, "r.cayetana@hospital.accwe");
+
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient1);
+        entityManager.persist(patient2);
+
+        entityManager.persist(doctor1);
+        entityManager.persist(doctor2);
+
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        Appointment appointment1 = new Appointment(patient1, doctor1, room1, startsAt, startsAt.plusHours(1));
+        Appointment appointment2 = new Appointment(patient2, doctor2, room2, startsAt.plusHours(1), startsAt.plusHours(2));
+        Appointment appointment3 = new Appointment(patient1, doctor2, room1, startsAt.plusHours(3), startsAt.plusHours(4));
+
+        entityManager.persist(appointment1);
+        entityManager.persist(appointment2);
+        entityManager.persist(appointment3);
+
+        LocalDateTime from = startsAt.plusMinutes(30);
+        LocalDateTime to = startsAt.plusMinutes(90);
+
+        assertThat(repoAppointments.findByDoctorWithin(doctor1.getId(), from, to)).containsExactly(appointment1);
+        assertThat(repoAppointments.findByDoctorWithin(doctor2.getId(), from, to)).containsExactly(appointment2);
+        assertThat(repoAppointments.findByPatientWithin(patient1.getId(), from, to)).containsExactly(appointment1);
+        assertThat(repoAppointments.findByRoomWithin(room1.getRoomName(), from, to)).containsExactly(appointment1);
+
+        // [startsAt, finishesAt) windows touching at the edges do not intersect
+        assertThat(repoAppointments.findByRoomWithin(room2.getRoomName(), startsAt, startsAt.plusHours(1))).isEmpty();
+        assertThat(repoAppointments.findByPatientWithin(patient1.getId(), startsAt.plusHours(1), startsAt.plusHours(3))).isEmpty();
+    }
+
+    @Test
+    void should_find_appointments_after_cursor(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Carina", "Zaray", 49, "c.zaray@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+
+        Appointment appointment1 = new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1));
+        Appointment appointment2 = new Appointment(patient, doctor, room, startsAt.plusHours(1), startsAt.plusHours(2));
+        Appointment appointment3 = new Appointment(patient, doctor, room, startsAt.plusHours(2), startsAt.plusHours(3));
+
+        entityManager.persist(appointment1);
+        entityManager.persist(appointment2);
+        entityManager.persist(appointment3);
+
+        assertThat(repoAppointments.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 2)))
+            .containsExactly(appointment1, appointment2);
+        assertThat(repoAppointments.findByIdGreaterThanOrderByIdAsc(appointment2.getId(), PageRequest.of(0, 2)))
+            .containsExactly(appointment3);
+    }
+
+    @Test
+    void should_find_filtered_appointments(){
+        Patient patient1 = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Mariela", "Eric", 42, "m.eric@email.com");
+
+        Doctor doctor1 = new Doctor ("Carina", "Zaray", 49, "c.zaray@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Reyna", "Cayetana", 28, "r.cayetana@hospital.accwe");
+
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime today = LocalDateTime.of(2023, 4, 24, 9, 0);
+        LocalDateTime tomorrow = today.plusDays(1);
+
+        entityManager.persist(patient1);
+        entityManager.persist(patient2);
+
+        entityManager.persist(doctor1);
+        entityManager.persist(doctor2);
+
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        Appointment appointment1 = new Appointment(patient1, doctor1, room1, today, today.plusHours(1));
+        Appointment appointment2 = new Appointment(patient2, doctor1, room2, tomorrow, tomorrow.plusHours(1));
+        Appointment appointment3 = new Appointment(patient1, doctor2, room1, tomorrow.plusHours(2), tomorrow.plusHours(3));
+
+        entityManager.persist(appointment1);
+        entityManager.persist(appointment2);
+        entityManager.persist(appointment3);
+
+        PageRequest page = PageRequest.of(0, 10);
+        LocalDateTime from = tomorrow.withHour(0);
+        LocalDateTime to = from.plusDays(1);
+
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(doctor1.getId(), null, null, from, to), 0, page))
+            .extracting(AppointmentView::getId).containsExactly(appointment2.getId());
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, patient1.getId(), null, null, null), 0, page))
+            .extracting(AppointmentView::getId).containsExactly(appointment1.getId(), appointment3.getId());
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, null, "Dermatology", from, null), 0, page))
+            .extracting(AppointmentView::getId).containsExactly(appointment3.getId());
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, null, null, null, from), 0, page))
+            .extracting(AppointmentView::getId).containsExactly(appointment1.getId());
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, null, null, from, to), appointment2.getId(), page))
+            .extracting(AppointmentView::getId).containsExactly(appointment3.getId());
+    }
+
+    @Test
+    void should_list_appointments_with_a_fixed_number_of_statements(){
+        int count = 50;
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        for (int i = 0; i < count; i++){
+            // every appointment has its own patient, doctor and room
+            Patient patient = entityManager.persist(new Patient("Patient", "Number " + i, 30, "p" + i + "@email.com"));
+            Doctor doctor = entityManager.persist(new Doctor("Doctor", "Number " + i, 40, "d" + i + "@hospital.accwe"));
+            Room room = entityManager.persist(new Room("Room " + i));
+            entityManager.persist(new Appointment(patient, doctor, room, startsAt.plusHours(i), startsAt.plusHours(i + 1)));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        assertThat(repoAppointments.findAll()).hasSize(count);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        entityManager.clear();
+
+        statistics.clear();
+        assertThat(repoAppointments.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, count))).hasSize(count);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        entityManager.clear();
+
+        statistics.clear();
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, null, null, startsAt, null), 0, PageRequest.of(0, count))).hasSize(count);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        entityManager.clear();
+
+        statistics.clear();
+        assertThat(repoAppointments.findAllViews()).hasSize(count);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThat(repoAppointments.findByRoomWithin("Room 7", startsAt, startsAt.plusDays(3))).hasSize(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_find_flat_appointment_view_by_id(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+
+        Appointment appointment = entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1)));
+
+        AppointmentView view = repoAppointments.findViewById(appointment.getId()).get();
+
+        assertThat(view)
+            .hasFieldOrPropertyWithValue("id", appointment.getId())
+            .hasFieldOrPropertyWithValue("startsAt", startsAt)
+            .hasFieldOrPropertyWithValue("finishesAt", startsAt.plusHours(1))
+            .hasFieldOrPropertyWithValue("doctorId", doctor.getId())
+            .hasFieldOrPropertyWithValue("doctorLastName", "Amalia")
+            .hasFieldOrPropertyWithValue("patientId", patient.getId())
+            .hasFieldOrPropertyWithValue("patientFirstName", "Jose Luis")
+            .hasFieldOrPropertyWithValue("roomName", "Dermatology");
+        assertThat(repoAppointments.findViewById(appointment.getId() + 1)).isEmpty();
+    }
+
 }
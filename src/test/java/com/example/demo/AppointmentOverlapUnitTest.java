@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entities.*;
+
+/**
+ * Properties of {@link Appointment#overlaps}, checked over seeded random pairs
+ * drawn from a small set of doctors, patients and rooms so that shared
+ * resources and touching intervals come up often.
+ */
+class AppointmentOverlapUnitTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+    private static final int PAIRS = 20_000;
+
+    private final Random random = new Random(42);
+    private final Doctor[] doctors = new Doctor[3];
+    private final Patient[] patients = new Patient[3];
+    private final Room[] rooms = new Room[3];
+
+    AppointmentOverlapUnitTest(){
+        for (int i = 0; i < 3; i++){
+            doctors[i] = new Doctor("Doctor", "Number " + i, 40, "doctor" + i + "@hospital.accwe");
+            doctors[i].setId(i + 1);
+            patients[i] = new Patient("Patient", "Number " + i, 30, "patient" + i + "@email.com");
+            patients[i].setId(i + 1);
+            rooms[i] = new Room("Room " + i);
+        }
+    }
+
+    @Test
+    void shouldBeSymmetric(){
+        for (int i = 0; i < PAIRS; i++){
+            Appointment a = randomAppointment();
+            Appointment b = randomAppointment();
+
+            assertThat(a.overlaps(b)).as("%s / %s", describe(a), describe(b)).isEqualTo(b.overlaps(a));
+        }
+    }
+
+    @Test
+    void shouldOverlapInTimeExactlyWhenAMinuteIsShared(){
+        for (int i = 0; i < PAIRS; i++){
+            Appointment a = randomAppointment();
+            Appointment b = randomAppointment();
+
+            boolean shared = false;
+            for (long minute = a.getStartMinute(); minute < a.getEndMinute() && !shared; minute++){
+                shared = b.getStartMinute() <= minute && minute < b.getEndMinute();
+            }
+            assertThat(a.overlapsInTime(b)).as("%s / %s", describe(a), describe(b)).isEqualTo(shared);
+        }
+    }
+
+    @Test
+    void shouldConflictExactlyWhenAResourceIsSharedAtTheSameTime(){
+        for (int i = 0; i < PAIRS; i++){
+            Appointment a = randomAppointment();
+            Appointment b = randomAppointment();
+
+            boolean sharesResource = a.getDoctor() == b.getDoctor() || a.getPatient() == b.getPatient()
+                    || a.getRoom().getRoomName().equals(b.getRoom().getRoomName());
+            assertThat(a.overlaps(b)).as("%s / %s", describe(a), describe(b))
+                    .isEqualTo(sharesResource && a.overlapsInTime(b));
+        }
+    }
+
+    @Test
+    void shouldOverlapItselfAndAnythingItContains(){
+        for (int i = 0; i < PAIRS; i++){
+            Appointment a = randomAppointment();
+            long length = a.getEndMinute() - a.getStartMinute();
+            long from = random.nextInt((int) length);
+            LocalDateTime startsAt = a.getStartsAt().plusMinutes(from);
+            Appointment inside = new Appointment(null, null, a.getRoom(), startsAt, startsAt.plusMinutes(1 + random.nextInt((int) (length - from))));
+            Appointment after = new Appointment(a.getPatient(), a.getDoctor(), a.getRoom(), a.getFinishesAt(), a.getFinishesAt().plusMinutes(30));
+
+            assertThat(a.overlaps(a)).isTrue();
+            assertThat(a.overlaps(inside)).as("%s / %s", describe(a), describe(inside)).isTrue();
+            assertThat(inside.overlaps(a)).as("%s / %s", describe(inside), describe(a)).isTrue();
+            assertThat(a.overlaps(after)).as("%s / %s", describe(a), describe(after)).isFalse();
+        }
+    }
+
+    @Test
+    void shouldFollowTheTimesWhenTheyChange(){
+        Appointment a = new Appointment(patients[0], doctors[0], rooms[0], DAY, DAY.plusHours(1));
+        Appointment b = new Appointment(patients[1], doctors[1], rooms[0], DAY.plusHours(2), DAY.plusHours(3));
+        assertThat(a.overlaps(b)).isFalse();
+
+        b.setStartsAt(DAY.plusMinutes(59));
+        assertThat(a.overlaps(b)).isTrue();
+
+        a.setFinishesAt(DAY.plusMinutes(59));
+        assertThat(a.overlaps(b)).isFalse();
+    }
+
+    private Appointment randomAppointment(){
+        LocalDateTime startsAt = DAY.plusMinutes(random.nextInt(8 * 60));
+        return new Appointment(patients[random.nextInt(3)], doctors[random.nextInt(3)], rooms[random.nextInt(3)],
+                startsAt, startsAt.plusMinutes(1 + random.nextInt(90)));
+    }
+
+    private static String describe(Appointment appointment){
+        return String.format("[%s, %s) doctor %d patient %d %s", appointment.getStartsAt(), appointment.getFinishesAt(),
+                appointment.getDoctor() == null ? 0 : appointment.getDoctor().getId(),
+                appointment.getPatient() == null ? 0 : appointment.getPatient().getId(),
+                appointment.getRoom().getRoomName());
+    }
+}
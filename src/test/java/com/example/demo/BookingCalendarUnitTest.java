@@ -0,0 +1,168 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.services.BookingCalendar;
+import com.example.demo.services.Timeline;
+import com.sun.management.ThreadMXBean;
+
+class BookingCalendarUnitTest {
+
+    @Test
+    void shouldTreatBookingsAsHalfOpen(){
+        Timeline timeline = new Timeline();
+        timeline.insert(60, 120, 1);
+
+        assertThat(timeline.overlaps(0, 60)).isFalse();
+        assertThat(timeline.overlaps(120, 180)).isFalse();
+        assertThat(timeline.overlaps(59, 61)).isTrue();
+        assertThat(timeline.overlaps(119, 180)).isTrue();
+        assertThat(timeline.overlaps(0, 180)).isTrue();
+        assertThat(timeline.overlaps(90, 91)).isTrue();
+    }
+
+    @Test
+    void shouldFindBookingHiddenBehindShorterOnes(){
+        Timeline timeline = new Timeline();
+        timeline.insert(0, 1000, 1);
+        timeline.insert(10, 20, 2);
+        timeline.insert(30, 40, 3);
+
+        List<Long> found = new ArrayList<>();
+        timeline.forEachOverlapping(500, 600, found::add);
+
+        assertThat(timeline.overlaps(500, 600)).isTrue();
+        assertThat(found).containsExactly(1L);
+    }
+
+    @Test
+    void shouldNotFindRemovedBooking(){
+        Timeline timeline = new Timeline();
+        timeline.insert(10, 20, 1);
+        timeline.insert(10, 20, 2);
+
+        assertThat(timeline.remove(10, 1)).isTrue();
+        assertThat(timeline.remove(10, 1)).isFalse();
+        assertThat(timeline.ids()).containsExactly(2L);
+
+        assertThat(timeline.remove(10, 2)).isTrue();
+        assertThat(timeline.overlaps(0, 100)).isFalse();
+        assertThat(timeline.isEmpty()).isTrue();
+    }
+
+    @Test
+    void shouldMatchLinearScan(){
+        Random random = new Random(42);
+        Timeline timeline = new Timeline();
+        long[][] intervals = new long[2000][];
+        for (int i = 0; i < intervals.length; i++){
+            long start = random.nextInt(100_000);
+            intervals[i] = new long[]{start, start + 1 + random.nextInt(500)};
+            timeline.insert(intervals[i][0], intervals[i][1], i);
+        }
+        for (int i = 0; i < intervals.length; i += 2){
+            assertThat(timeline.remove(intervals[i][0], i)).isTrue();
+        }
+
+        for (int q = 0; q < 500; q++){
+            long from = random.nextInt(100_000);
+            long to = from + 1 + random.nextInt(1_000);
+
+            List<Long> expected = new ArrayList<>();
+            for (int i = 1; i < intervals.length; i += 2){
+                if (intervals[i][0] < to && from < intervals[i][1]){
+                    expected.add((long) i);
+                }
+            }
+            List<Long> found = new ArrayList<>();
+            timeline.forEachOverlapping(from, to, found::add);
+
+            assertThat(found).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(timeline.overlaps(from, to)).isEqualTo(!expected.isEmpty());
+        }
+    }
+
+    @Test
+    void shouldInternResourcesOnce(){
+        BookingCalendar calendar = new BookingCalendar();
+        for (long id = 0; id < 1000; id++){
+            calendar.doctor(id * 7919);
+        }
+
+        assertThat(calendar.findDoctor(7919)).isEqualTo(calendar.doctor(7919));
+        assertThat(calendar.findDoctor(7919)).isNotEqualTo(calendar.patient(7919));
+        assertThat(calendar.findPatient(1)).isEqualTo(BookingCalendar.NONE);
+        assertThat(calendar.room("Dermatology")).isEqualTo(calendar.findRoom("Dermatology"));
+        assertThat(calendar.findRoom("Oncology")).isEqualTo(BookingCalendar.NONE);
+        assertThat(calendar.timeline(BookingCalendar.NONE)).isNull();
+
+        calendar.clear();
+        assertThat(calendar.findDoctor(7919)).isEqualTo(BookingCalendar.NONE);
+    }
+
+    @Test
+    void shouldRoundSubMinuteBookingsOutwards(){
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0, 30);
+
+        assertThat(Appointment.toEndMinute(startsAt) - Appointment.toStartMinute(startsAt)).isEqualTo(1);
+        assertThat(Appointment.toEndMinute(startsAt.withSecond(0))).isEqualTo(Appointment.toStartMinute(startsAt));
+    }
+
+    @Test
+    void shouldCheckConflictsWithoutAllocating(){
+        BookingCalendar calendar = new BookingCalendar();
+        String[] rooms = new String[16];
+        LocalDateTime first = LocalDateTime.of(2030, 1, 7, 0, 0);
+        for (int r = 0; r < rooms.length; r++){
+            rooms[r] = "Room " + r;
+            Timeline timeline = calendar.timeline(calendar.room(rooms[r]));
+            for (int h = 0; h < 1000; h++){
+                LocalDateTime startsAt = first.plusHours(h);
+                timeline.insert(Appointment.toStartMinute(startsAt), Appointment.toEndMinute(startsAt.plusHours(1)), r * 1000L + h);
+            }
+        }
+        Random random = new Random(42);
+        String[] probeRooms = new String[1024];
+        LocalDateTime[] probeStarts = new LocalDateTime[1024];
+        LocalDateTime[] probeEnds = new LocalDateTime[1024];
+        for (int i = 0; i < probeStarts.length; i++){
+            probeRooms[i] = random.nextInt(4) == 0 ? "Unknown" : rooms[random.nextInt(rooms.length)];
+            probeStarts[i] = first.plusMinutes(random.nextInt(2000 * 60));
+            probeEnds[i] = probeStarts[i].plusMinutes(15);
+        }
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int checks = 1_000_000;
+        // warm up so the measured run is the compiled code
+        int conflicts = check(calendar, probeRooms, probeStarts, probeEnds, checks);
+        long before = threads.getThreadAllocatedBytes(thread);
+        conflicts += check(calendar, probeRooms, probeStarts, probeEnds, checks);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertThat(conflicts).isPositive();
+        // less than one byte per check, while any allocation costs at least 16
+        assertThat(allocated).isLessThan(checks);
+    }
+
+    private static int check(BookingCalendar calendar, String[] rooms, LocalDateTime[] starts, LocalDateTime[] ends, int checks){
+        int conflicts = 0;
+        for (int i = 0; i < checks; i++){
+            int probe = i & (starts.length - 1);
+            if (calendar.overlaps(calendar.findRoom(rooms[probe]),
+                    Appointment.toStartMinute(starts[probe]), Appointment.toEndMinute(ends[probe]))){
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+}
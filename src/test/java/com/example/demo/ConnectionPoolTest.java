@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class ConnectionPoolTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ConnectionPoolCheck connectionPoolCheck;
+
+    @Test
+    void shouldRunTheNamedPoolWithLeakDetection(){
+        assertThat(dataSource).isInstanceOf(HikariDataSource.class);
+        HikariDataSource pool = (HikariDataSource) dataSource;
+        assertThat(pool.getPoolName()).isEqualTo("hospital-pool");
+        assertThat(pool.getLeakDetectionThreshold()).isPositive();
+    }
+
+    @Test
+    void shouldPublishPoolGauges(){
+        connectionPoolCheck.check();
+
+        assertThat(meterRegistry.get("hikaricp.connections.active").tag("pool", "hospital-pool").gauge()).isNotNull();
+        assertThat(meterRegistry.get("hikaricp.connections.idle").tag("pool", "hospital-pool").gauge()).isNotNull();
+        assertThat(meterRegistry.get("hikaricp.connections.pending").tag("pool", "hospital-pool").gauge()).isNotNull();
+        assertThat(meterRegistry.get("hikaricp.connections.acquire").tag("pool", "hospital-pool").timer().count()).isPositive();
+    }
+}
@@ -3,6 +3,13 @@ package com.example.demo;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -15,10 +22,13 @@ import com.example.demo.repositories.DoctorRepository;
 import com.example.demo.entities.Doctor;
 
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureTestDatabase(replace=Replace.NONE)
 class DoctorJpaUnitTest {
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Autowired
     private TestEntityManager entityManager;
 
@@ -102,5 +112,35 @@ class DoctorJpaUnitTest {
         repository.deleteAll();
         assertThat(repository.findAll()).isEmpty();
     }
-    
+
+    @Test
+    void should_save_doctors_in_batches(){
+        List<Doctor> doctors = new ArrayList<>();
+        for (int i = 0; i < 100; i++){
+            doctors.add(new Doctor("Doctor", "Number " + i, 40, "doctor" + i + "@hospital.accwe"));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        repository.saveAll(doctors);
+        entityManager.flush();
+
+        // a couple of sequence calls for 100 ids and one insert statement per batch of 50
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(100);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(5);
+        assertThat(doctors).extracting(Doctor::getId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void should_increment_version_on_update(){
+        Doctor doc = entityManager.persistFlushFind(new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe"));
+        assertThat(doc.getVersion()).isZero();
+
+        doc.setEmail("juan.carlos@hospital.accwe");
+        entityManager.flush();
+
+        assertThat(doc.getVersion()).isEqualTo(1);
+    }
+
 }
@@ -3,6 +3,8 @@ package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -28,6 +30,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
@@ -36,14 +41,20 @@ import org.springframework.util.MultiValueMap;
 import com.example.demo.controllers.*;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(DoctorController.class)
+@Import(ResourceVersions.class)
 class DoctorControllerUnitTest{
 
     @MockBean
     private DoctorRepository doctorRepository;
 
+    @MockBean
+    private SchedulingService schedulingService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -87,6 +98,20 @@ class DoctorControllerUnitTest{
                     .andExpect(status().isOk());
 
         }
+
+        @Test
+        @DisplayName("Should get doctors after cursor")
+        void shouldGetDoctorsAfterCursor() throws Exception{
+
+            Doctor doctor1 = new Doctor("Alonso", "Gonzalez", 22, "alonso@gonzalez.com");
+            doctor1.setId(6);
+
+            when(doctorRepository.findByIdGreaterThanOrderByIdAsc(5, PageRequest.of(0, 100)))
+                    .thenReturn(Collections.singletonList(doctor1));
+            mockMvc.perform(get("/api/doctors").param("after", "5"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id").value(6));
+        }
     }
 
     @Nested
@@ -103,7 +128,7 @@ class DoctorControllerUnitTest{
             assertThat(optionalDoctor.get().getId()).isEqualTo(doctor1.getId());
             assertThat(doctor1.getId()).isEqualTo(5);
 
-            when(doctorRepository.findById(doctor1.getId())).thenReturn(optionalDoctor);
+            when(doctorRepository.findCachedById(doctor1.getId())).thenReturn(optionalDoctor);
             mockMvc.perform(get("/api/doctors/" + doctor1.getId()))
                     .andExpect(status().isOk());
 
@@ -114,11 +139,27 @@ class DoctorControllerUnitTest{
         void shouldGetNoDoctorById() throws Exception {
             long id = 1;
 
-            when(doctorRepository.findById(id)).thenReturn(Optional.empty());
+            when(doctorRepository.findCachedById(id)).thenReturn(Optional.empty());
             mockMvc.perform(get("/api/doctors/" + id))
                     .andExpect(status().isNotFound());
 
         }
+
+        @Test
+        @DisplayName("Should answer not modified for unchanged doctor")
+        void shouldAnswerNotModifiedForUnchangedDoctor() throws Exception {
+            Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+            doctor.setId(5);
+
+            when(doctorRepository.findCachedById(5)).thenReturn(Optional.of(doctor));
+            mockMvc.perform(get("/api/doctors/5"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"5-0\""))
+                    .andExpect(jsonPath("$.version").doesNotExist());
+
+            mockMvc.perform(get("/api/doctors/5").header("If-None-Match", "\"5-0\""))
+                    .andExpect(status().isNotModified());
+        }
     }
 
     @Nested
@@ -136,7 +177,7 @@ class DoctorControllerUnitTest{
             assertThat(optionalDoctor.get().getId()).isEqualTo(doctor1.getId());
             assertThat(doctor1.getId()).isEqualTo(2);
 
-            when(doctorRepository.findById(doctor1.getId())).thenReturn(optionalDoctor);
+            when(schedulingService.removeDoctor(doctor1.getId())).thenReturn(true);
             mockMvc.perform(delete("/api/doctors/" + doctor1.getId()))
                     .andExpect(status().isOk());
         }
@@ -149,6 +190,38 @@ class DoctorControllerUnitTest{
             mockMvc.perform(delete("/api/doctors/" + id))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        @DisplayName("Should Not delete doctor with appointments")
+        void shouldNotDeleteDoctorWithAppointments() throws Exception {
+            long id = 4;
+
+            when(schedulingService.removeDoctor(id)).thenThrow(new DataIntegrityViolationException("FK_APPOINTMENT_DOCTOR"));
+            mockMvc.perform(delete("/api/doctors/" + id))
+                    .andExpect(status().isConflict());
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer not modified for doctors until one is created")
+    void shouldAnswerNotModifiedForDoctorsUntilOneIsCreated() throws Exception {
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        when(doctorRepository.findAll()).thenReturn(Collections.singletonList(doctor));
+
+        String etag = mockMvc.perform(get("/api/doctors"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/doctors").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        verify(doctorRepository, times(1)).findAll();
+
+        mockMvc.perform(post("/api/doctor").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(doctor)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/doctors").header("If-None-Match", etag))
+                .andExpect(status().isOk());
     }
 
     @Test
@@ -157,16 +230,22 @@ class DoctorControllerUnitTest{
 
         mockMvc.perform(delete("/api/doctors"))
                 .andExpect(status().isOk());
+
+        verify(schedulingService).removeAllDoctors();
     }
 }
 
 
 @WebMvcTest(PatientController.class)
+@Import(ResourceVersions.class)
 class PatientControllerUnitTest{
 
     @MockBean
     private PatientRepository patientRepository;
 
+    @MockBean
+    private SchedulingService schedulingService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -189,6 +268,21 @@ class PatientControllerUnitTest{
                     .andExpect(status().isOk());
         }
 
+        @Test
+        @DisplayName("Should get first page of patients")
+        void shouldGetFirstPageOfPatients() throws Exception {
+
+            Patient patient1 = new Patient("Antonio", "Roca", 22, "antonio@roca.com");
+            patient1.setId(1);
+
+            when(patientRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 1)))
+                    .thenReturn(Collections.singletonList(patient1));
+
+            mockMvc.perform(get("/api/patients").param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(1));
+        }
+
         @Test
         @DisplayName("Should get two patients JSONResponse")
         void shouldGetTwoPatientsJsonResponse() throws Exception {
@@ -231,7 +325,7 @@ class PatientControllerUnitTest{
             assertThat(patient.getId()).isEqualTo(3);
             assertThat(optionalPatient.get().getId()).isEqualTo(patient.getId());
 
-            when(patientRepository.findById(patient.getId())).thenReturn(optionalPatient);
+            when(patientRepository.findCachedById(patient.getId())).thenReturn(optionalPatient);
         }
         @Test
         @DisplayName("Should get patient by Id")
@@ -255,7 +349,7 @@ class PatientControllerUnitTest{
     @DisplayName("Should Not get patient by Id")
     void shouldNotGetPatientById() throws Exception {
         long id = 5;
-        when(patientRepository.findById(id)).thenReturn(Optional.empty());
+        when(patientRepository.findCachedById(id)).thenReturn(Optional.empty());
         mockMvc.perform(get("/api/patients/" + id))
                 .andExpect(status().isNotFound());
     }
@@ -287,7 +381,7 @@ class PatientControllerUnitTest{
             assertThat(optionalPatient.get().getId()).isEqualTo(patient.getId());
             assertThat(patient.getId()).isEqualTo(1);
 
-            when(patientRepository.findById(patient.getId())).thenReturn(optionalPatient);
+            when(schedulingService.removePatient(patient.getId())).thenReturn(true);
             mockMvc.perform(delete("/api/patients/" + patient.getId()))
                     .andExpect(status().isOk());
         }
@@ -300,6 +394,16 @@ class PatientControllerUnitTest{
             mockMvc.perform(delete("/api/patients/" + id))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        @DisplayName("Should Not delete patient with appointments")
+        void shouldNotDeletePatientWithAppointments() throws Exception {
+            long id = 4;
+
+            when(schedulingService.removePatient(id)).thenThrow(new DataIntegrityViolationException("FK_APPOINTMENT_PATIENT"));
+            mockMvc.perform(delete("/api/patients/" + id))
+                    .andExpect(status().isConflict());
+        }
     }
 
     @Test
@@ -308,15 +412,21 @@ class PatientControllerUnitTest{
 
         mockMvc.perform(delete("/api/patients"))
                 .andExpect(status().isOk());
+
+        verify(schedulingService).removeAllPatients();
     }
 }
 
 @WebMvcTest(RoomController.class)
+@Import(ResourceVersions.class)
 class RoomControllerUnitTest{
 
     @MockBean
     private RoomRepository roomRepository;
 
+    @MockBean
+    private SchedulingService schedulingService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -338,6 +448,19 @@ class RoomControllerUnitTest{
                     .andExpect(status().isOk());
         }
 
+        @Test
+        @DisplayName("Should get rooms after cursor")
+        void shouldGetRoomsAfterCursor() throws Exception {
+
+            Room room1 = new Room("Osteopath");
+            when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("Dentist", PageRequest.of(0, 1000)))
+                    .thenReturn(Collections.singletonList(room1));
+
+            mockMvc.perform(get("/api/rooms").param("after", "Dentist").param("limit", "5000"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].roomName").value("Osteopath"));
+        }
+
         @Test
         @DisplayName("Should get two rooms JSONResponse")
         void shouldGetTwoRoomsJsonResponse() throws Exception {
@@ -380,7 +503,7 @@ class RoomControllerUnitTest{
             assertThat(room.getRoomName()).isEqualTo("Osteopath");
             assertThat(optionalRoom.get().getRoomName()).isEqualTo(room.getRoomName());
 
-            when(roomRepository.findByRoomName(room.getRoomName())).thenReturn(optionalRoom);
+            when(roomRepository.findCachedByRoomName(room.getRoomName())).thenReturn(optionalRoom);
         }
         @Test
         @DisplayName("Should get room by RoomName HttpStatus")
@@ -404,7 +527,7 @@ class RoomControllerUnitTest{
     @DisplayName("Should Not get room by RoomName")
     void shouldNotGetRoomByRoomName() throws Exception {
         String roomName = "Dentist";
-        when(roomRepository.findByRoomName(roomName)).thenReturn(Optional.empty());
+        when(roomRepository.findCachedByRoomName(roomName)).thenReturn(Optional.empty());
         mockMvc.perform(get("/api/patients/" + roomName))
                 .andExpect(status().isNotFound());
     }
@@ -434,7 +557,7 @@ class RoomControllerUnitTest{
             assertThat(optionalRoom.get().getRoomName()).isEqualTo(room.getRoomName());
             assertThat(room.getRoomName()).isEqualTo("Osteopath");
 
-            when(roomRepository.findByRoomName(room.getRoomName())).thenReturn(optionalRoom);
+            when(schedulingService.removeRoom(room.getRoomName())).thenReturn(true);
             mockMvc.perform(delete("/api/rooms/" + room.getRoomName()))
                     .andExpect(status().isOk());
         }
@@ -447,6 +570,16 @@ class RoomControllerUnitTest{
             mockMvc.perform(delete("/api/rooms/" + roomName))
                     .andExpect(status().isNotFound());
         }
+
+        @Test
+        @DisplayName("Should Not delete room with appointments")
+        void shouldNotDeleteRoomWithAppointments() throws Exception {
+            String roomName = "Oncology";
+
+            when(schedulingService.removeRoom(roomName)).thenThrow(new DataIntegrityViolationException("FK_APPOINTMENT_ROOM"));
+            mockMvc.perform(delete("/api/rooms/" + roomName))
+                    .andExpect(status().isConflict());
+        }
     }
 
     @Test
@@ -455,6 +588,8 @@ class RoomControllerUnitTest{
 
         mockMvc.perform(delete("/api/rooms"))
                 .andExpect(status().isOk());
+
+        verify(schedulingService).removeAllRooms();
     }
 
 }
@@ -35,13 +35,17 @@ class EntityUnitTest {
 
     private Patient patient = new Patient("John", "Doe", 30, "johndoe@example.com");;
 
+    private final Doctor doctor2 = new Doctor("Jane", "Roe", 41, "janeroe@example.com");
+
+    private final Patient patient2 = new Patient("Jane", "Roe", 41, "janeroe@example.com");
+
     private final Room room1 = new Room("Dentist");
 
     private final Room room2 = new Room("Osteopath");
 
     private Appointment appointment1 = new Appointment(patient, doctor, room1, startsAt, finishesAt);
     private Appointment appointment2 = new Appointment(patient, doctor, room1, startsAt.plusHours(3), finishesAt.plusHours(4));
-    private Appointment appointment3 = new Appointment(patient, doctor, room2, startsAt, finishesAt);
+    private Appointment appointment3 = new Appointment(patient2, doctor2, room2, startsAt, finishesAt);
 
 
     @Test
@@ -118,6 +122,27 @@ class EntityUnitTest {
         assertThat(overlap).isFalse();
     }
 
+    @Test
+    @Order(5)
+    @DisplayName("Test Appointment Overlap Method Same Doctor in Different Rooms and same Time Returns True")
+    public void appointmentOverlapMethodSameDoctorDifferentRoomsReturnsTrue(){
+
+        Appointment appointment4 = new Appointment(patient2, doctor, room2, startsAt.plusMinutes(15), finishesAt.minusMinutes(15));
+
+        assertThat(appointment1.overlaps(appointment4)).isTrue();
+        assertThat(appointment4.overlaps(appointment1)).isTrue();
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Test Appointment Overlap Method Same Patient in Different Rooms and same Time Returns True")
+    public void appointmentOverlapMethodSamePatientDifferentRoomsReturnsTrue(){
+
+        Appointment appointment4 = new Appointment(patient, doctor2, room2, startsAt.minusMinutes(30), startsAt.plusMinutes(1));
+
+        assertThat(appointment1.overlaps(appointment4)).isTrue();
+    }
+
     @Test
     @Order(6)
     @DisplayName("Test Appointment Overlap Method Same Room and Time Returns True")
@@ -151,6 +176,28 @@ class EntityUnitTest {
         assertThat(overlap).isTrue();
     }
 
+    @Test
+    @Order(9)
+    @DisplayName("Test Appointment Overlap Method Same Room - Second appointment contains the first one returns True")
+    public void secondAppointmentContainsFirstAppointment(){
+
+        Appointment appointment4 = new Appointment(patient2, doctor2, room1, startsAt.minusHours(1), finishesAt.plusHours(1));
+
+        assertThat(appointment1.overlaps(appointment4)).isTrue();
+        assertThat(appointment4.overlaps(appointment1)).isTrue();
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("Test Appointment Overlap Method Same Room - Second appointment starts when the first one finishes returns False")
+    public void secondAppointmentStartsWhenFirstAppointmentFinishes(){
+
+        Appointment appointment4 = new Appointment(patient, doctor, room1, finishesAt, finishesAt.plusHours(1));
+
+        assertThat(appointment1.overlaps(appointment4)).isFalse();
+        assertThat(appointment4.overlaps(appointment1)).isFalse();
+    }
+
     @Test
     @Order(9)
     @DisplayName("Test Appointment Overlap Method Same Room - Second appointment starts before the first appointment is finished returns True")
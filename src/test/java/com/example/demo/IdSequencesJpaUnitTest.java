@@ -0,0 +1,55 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@DataJpaTest
+@Import(IdSequences.class)
+class IdSequencesJpaUnitTest {
+
+    @Autowired
+    private IdSequences idSequences;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void dropTables(){
+        jdbcTemplate.execute("drop table if exists legacy_seq");
+        jdbcTemplate.execute("drop table if exists legacy");
+    }
+
+    @Test
+    void shouldMoveTableBackedSequencePastStoredIds(){
+        // what ddl-auto creates for a sequence on MySQL, next to rows numbered by hibernate_sequence
+        jdbcTemplate.execute("create table legacy_seq (next_val bigint)");
+        jdbcTemplate.update("insert into legacy_seq values (1)");
+        jdbcTemplate.execute("create table legacy (id bigint primary key)");
+        jdbcTemplate.update("insert into legacy values (7), (42)");
+
+        assertThat(idSequences.seed("legacy_seq", "legacy")).isTrue();
+        assertThat(jdbcTemplate.queryForObject("select next_val from legacy_seq", Long.class)).isEqualTo(43);
+
+        // already past the stored ids: left alone
+        jdbcTemplate.update("update legacy_seq set next_val = 100");
+        assertThat(idSequences.seed("legacy_seq", "legacy")).isFalse();
+        assertThat(jdbcTemplate.queryForObject("select next_val from legacy_seq", Long.class)).isEqualTo(100);
+    }
+
+    @Test
+    void shouldLeaveNativeSequencesAndEmptyTablesAlone(){
+        // H2 has real sequences, so there is no doctor_seq table
+        assertThat(idSequences.seed("doctor_seq", "doctors")).isFalse();
+
+        jdbcTemplate.execute("create table legacy_seq (next_val bigint)");
+        jdbcTemplate.update("insert into legacy_seq values (1)");
+        jdbcTemplate.execute("create table legacy (id bigint primary key)");
+        assertThat(idSequences.seed("legacy_seq", "legacy")).isFalse();
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import com.example.demo.dto.BookingResult;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.SchedulingService;
+
+/**
+ * Mixed read/write traffic against every non-destructive /api endpoint, on
+ * H2 seeded with configurable volumes. Reports throughput and p50/p95/p99
+ * latency per operation for each of {@code load.runs} measured runs, and the
+ * mean and standard deviation of throughput and p99 across them. Excluded
+ * from the default build; run it with
+ * {@code ./mvnw test -Pload-test -Dload.appointments=200000 -Dload.clients=64}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class LoadTest {
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+    private static final LocalDateTime FIRST_DAY = LocalDateTime.of(2030, 1, 7, 8, 0);
+    private static final int DAYS = 365;
+    private static final int SLOTS_PER_DAY = 20;
+    private static final int SEED_CHUNK = 1000;
+
+    @Value("${load.doctors:200}")
+    int doctorCount;
+
+    @Value("${load.patients:2000}")
+    int patientCount;
+
+    @Value("${load.rooms:50}")
+    int roomCount;
+
+    @Value("${load.appointments:20000}")
+    int appointmentCount;
+
+    @Value("${load.clients:32}")
+    int clients;
+
+    @Value("${load.warmup-seconds:5}")
+    int warmupSeconds;
+
+    @Value("${load.duration-seconds:30}")
+    int durationSeconds;
+
+    @Value("${load.runs:1}")
+    int runs;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
+    private List<Doctor> doctors;
+    private List<Patient> patients;
+    private List<Room> rooms;
+    private long firstAppointmentId = Long.MAX_VALUE;
+    private long lastAppointmentId;
+    private int seeded;
+
+    @BeforeEach
+    void seed(){
+        List<Doctor> newDoctors = new ArrayList<>();
+        for (int i = 0; i < doctorCount; i++){
+            newDoctors.add(new Doctor("Doctor", "Number " + i, 30 + i % 35, "doctor" + i + "@hospital.accwe"));
+        }
+        doctors = doctorRepository.saveAll(newDoctors);
+
+        List<Patient> newPatients = new ArrayList<>();
+        for (int i = 0; i < patientCount; i++){
+            newPatients.add(new Patient("Patient", "Number " + i, 18 + i % 70, "patient" + i + "@email.com"));
+        }
+        patients = patientRepository.saveAll(newPatients);
+
+        List<Room> newRooms = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++){
+            newRooms.add(new Room("Load room " + i));
+        }
+        rooms = roomRepository.saveAll(newRooms);
+
+        List<Appointment> batch = new ArrayList<>(SEED_CHUNK);
+        for (int i = 0; i < appointmentCount; i++){
+            batch.add(randomAppointment());
+            if (batch.size() == SEED_CHUNK || i == appointmentCount - 1){
+                for (BookingResult result : schedulingService.bookAll(batch)){
+                    if (result.isAccepted()){
+                        seeded++;
+                        firstAppointmentId = Math.min(firstAppointmentId, result.getId());
+                        lastAppointmentId = Math.max(lastAppointmentId, result.getId());
+                    }
+                }
+                batch = new ArrayList<>(SEED_CHUNK);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown(){
+        schedulingService.removeAllRooms();
+        schedulingService.removeAllDoctors();
+        schedulingService.removeAllPatients();
+    }
+
+    @Test
+    void shouldServeMixedTrafficWithoutServerErrors() throws Exception {
+        run(TimeUnit.SECONDS.toNanos(warmupSeconds));
+        double[] throughput = new double[runs];
+        double[] p99 = new double[runs];
+        int serverErrors = 0;
+        long requests = 0;
+        for (int r = 0; r < runs; r++){
+            long started = System.nanoTime();
+            List<Map<String, Samples>> results = run(TimeUnit.SECONDS.toNanos(durationSeconds));
+            double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+            Map<String, Samples> byOperation = new TreeMap<>();
+            Samples total = new Samples();
+            for (Map<String, Samples> client : results){
+                client.forEach((operation, samples) -> {
+                    byOperation.computeIfAbsent(operation, k -> new Samples()).addAll(samples);
+                    total.addAll(samples);
+                });
+            }
+
+            StringBuilder report = new StringBuilder(String.format("%nLoad test run %d/%d: %d doctors, %d patients, %d rooms, %d appointments, %d clients, %ds%n",
+                    r + 1, runs, doctorCount, patientCount, roomCount, seeded, clients, durationSeconds));
+            report.append(String.format("%-18s %9s %7s %9s %9s %9s %9s %9s%n", "operation", "requests", "5xx", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+            byOperation.forEach((operation, samples) -> report.append(samples.row(operation, elapsedSeconds)));
+            report.append(total.row("total", elapsedSeconds));
+            System.out.println(report);
+
+            throughput[r] = total.count / elapsedSeconds;
+            p99[r] = total.percentile(99);
+            serverErrors += total.serverErrors;
+            requests += total.count;
+        }
+        if (runs > 1){
+            System.out.printf("%nLoad test over %d runs: %s req/s, p99 %s ms%n", runs, meanAndDeviation(throughput), meanAndDeviation(p99));
+        }
+
+        assertThat(requests).isGreaterThan(0);
+        assertThat(serverErrors).as("requests answered with 5xx or failed").isZero();
+    }
+
+    // mean +/- sample standard deviation
+    private static String meanAndDeviation(double[] values){
+        double mean = Arrays.stream(values).average().orElse(0);
+        double squares = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum();
+        return String.format("%.1f +/- %.1f", mean, Math.sqrt(squares / (values.length - 1)));
+    }
+
+    private List<Map<String, Samples>> run(long durationNanos) throws Exception {
+        long deadline = System.nanoTime() + durationNanos;
+        List<Callable<Map<String, Samples>>> workers = new ArrayList<>();
+        for (int i = 0; i < clients; i++){
+            workers.add(() -> {
+                Map<String, Samples> samples = new TreeMap<>();
+                while (System.nanoTime() < deadline){
+                    Operation operation = Operation.pick(ThreadLocalRandom.current().nextInt(Operation.TOTAL_WEIGHT));
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = execute(operation).value();
+                    } catch (RuntimeException e){
+                        status = HttpStatus.INTERNAL_SERVER_ERROR.value();
+                    }
+                    samples.computeIfAbsent(operation.name, k -> new Samples()).add(System.nanoTime() - start, status);
+                }
+                return samples;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Map<String, Samples>> results = new ArrayList<>();
+        try {
+            for (Future<Map<String, Samples>> result : pool.invokeAll(workers)){
+                results.add(result.get());
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        return results;
+    }
+
+    private HttpStatus execute(Operation operation){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (operation){
+            case LIST_APPOINTMENTS_PAGE:
+                return restTemplate.getForEntity("/api/appointments?after={after}&limit=50", String.class,
+                        randomAppointmentId() - 1).getStatusCode();
+            case LIST_APPOINTMENTS_BY_DOCTOR:
+                return restTemplate.getForEntity("/api/appointments?doctorId={id}&limit=50", String.class,
+                        randomOf(doctors).getId()).getStatusCode();
+            case LIST_APPOINTMENTS_BY_ROOM_DAY:
+                LocalDateTime day = FIRST_DAY.plusDays(random.nextInt(DAYS));
+                return restTemplate.getForEntity("/api/appointments?room={room}&from={from}&to={to}", String.class,
+                        randomOf(rooms).getRoomName(), day.format(FORMAT), day.plusDays(1).format(FORMAT)).getStatusCode();
+            case GET_APPOINTMENT:
+                return restTemplate.getForEntity("/api/appointments/{id}", String.class, randomAppointmentId()).getStatusCode();
+            case GET_DOCTOR:
+                return restTemplate.getForEntity("/api/doctors/{id}", String.class, randomOf(doctors).getId()).getStatusCode();
+            case GET_PATIENT:
+                return restTemplate.getForEntity("/api/patients/{id}", String.class, randomOf(patients).getId()).getStatusCode();
+            case GET_ROOM:
+                return restTemplate.getForEntity("/api/rooms/{name}", String.class, randomOf(rooms).getRoomName()).getStatusCode();
+            case LIST_DOCTORS_PAGE:
+                return restTemplate.getForEntity("/api/doctors?limit=50", String.class).getStatusCode();
+            case LIST_ROOMS:
+                return restTemplate.getForEntity("/api/rooms", String.class).getStatusCode();
+            case BOOK:
+                return restTemplate.postForEntity("/api/appointment", randomAppointment(), String.class).getStatusCode();
+            case BOOK_BATCH:
+                Appointment[] batch = new Appointment[10];
+                Arrays.setAll(batch, i -> randomAppointment());
+                return restTemplate.postForEntity("/api/appointments/batch", batch, String.class).getStatusCode();
+            case CANCEL:
+                return restTemplate.exchange("/api/appointments/{id}", HttpMethod.DELETE, null, String.class,
+                        randomAppointmentId()).getStatusCode();
+            case CREATE_PATIENT:
+                return restTemplate.postForEntity("/api/patient", new Patient("Walk", "In", 40, "walk.in@email.com"), String.class).getStatusCode();
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    private Appointment randomAppointment(){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDateTime startsAt = FIRST_DAY.plusDays(random.nextInt(DAYS)).plusMinutes(30L * random.nextInt(SLOTS_PER_DAY));
+        return new Appointment(randomOf(patients), randomOf(doctors), randomOf(rooms), startsAt, startsAt.plusMinutes(30L * (1 + random.nextInt(3))));
+    }
+
+    private long randomAppointmentId(){
+        if (lastAppointmentId < firstAppointmentId){
+            return 1;
+        }
+        return ThreadLocalRandom.current().nextLong(firstAppointmentId, lastAppointmentId + 1);
+    }
+
+    private static <T> T randomOf(List<T> values){
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+
+    private enum Operation {
+        LIST_APPOINTMENTS_PAGE("appointments page", 12),
+        LIST_APPOINTMENTS_BY_DOCTOR("by doctor", 12),
+        LIST_APPOINTMENTS_BY_ROOM_DAY("by room and day", 10),
+        GET_APPOINTMENT("appointment", 15),
+        GET_DOCTOR("doctor", 8),
+        GET_PATIENT("patient", 8),
+        GET_ROOM("room", 4),
+        LIST_DOCTORS_PAGE("doctors page", 3),
+        LIST_ROOMS("rooms", 2),
+        BOOK("book", 14),
+        BOOK_BATCH("book batch", 3),
+        CANCEL("cancel", 6),
+        CREATE_PATIENT("create patient", 3);
+
+        static final int TOTAL_WEIGHT = Arrays.stream(values()).mapToInt(o -> o.weight).sum();
+
+        final String name;
+        final int weight;
+
+        Operation(String name, int weight){
+            this.name = name;
+            this.weight = weight;
+        }
+
+        static Operation pick(int roll){
+            for (Operation operation : values()){
+                roll -= operation.weight;
+                if (roll < 0){
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("roll out of range");
+        }
+    }
+
+    private static final class Samples {
+
+        private long[] nanos = new long[1024];
+        private int count;
+        private int serverErrors;
+
+        void add(long latency, int status){
+            if (count == nanos.length){
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latency;
+            if (status >= 500){
+                serverErrors++;
+            }
+        }
+
+        void addAll(Samples other){
+            if (count + other.count > nanos.length){
+                nanos = Arrays.copyOf(nanos, Math.max(nanos.length * 2, count + other.count));
+            }
+            System.arraycopy(other.nanos, 0, nanos, count, other.count);
+            count += other.count;
+            serverErrors += other.serverErrors;
+        }
+
+        double percentile(int percentile){
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return percentile(sorted, percentile);
+        }
+
+        String row(String operation, double elapsedSeconds){
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return String.format("%-18s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", operation, count, serverErrors, count / elapsedSeconds,
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), percentile(sorted, 100));
+        }
+
+        // nearest rank, in milliseconds
+        private static double percentile(long[] sorted, int percentile){
+            if (sorted.length == 0){
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1] / 1e6;
+        }
+    }
+}
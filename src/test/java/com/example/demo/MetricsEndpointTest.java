@@ -0,0 +1,74 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.SchedulingService;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "management.endpoints.web.exposure.include=prometheus")
+@AutoConfigureMetrics
+class MetricsEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
+    private Doctor doctor;
+    private Patient patient;
+
+    @AfterEach
+    void tearDown(){
+        schedulingService.cancelAll();
+        schedulingService.removeRoom("Metrics room");
+        doctorRepository.delete(doctor);
+        patientRepository.delete(patient);
+    }
+
+    @Test
+    void shouldScrapeEndpointRepositoryAndBookingMetrics(){
+        doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        LocalDateTime startsAt = LocalDateTime.of(2031, 3, 3, 9, 0);
+        Appointment appointment = new Appointment(patient, doctor, new Room("Metrics room"), startsAt, startsAt.plusHours(1));
+        Appointment backwards = new Appointment(patient, doctor, new Room("Metrics room"), startsAt.plusHours(1), startsAt);
+
+        assertThat(restTemplate.postForEntity("/api/appointment", appointment, Void.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.postForEntity("/api/appointment", appointment, Void.class).getStatusCode()).isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+        assertThat(restTemplate.postForEntity("/api/appointment", backwards, Void.class).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        restTemplate.getForEntity("/api/doctors/" + doctor.getId(), String.class);
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+                .contains("appointments_bookings_total{outcome=\"ok\",source=\"single\",} 1.0")
+                .contains("appointments_bookings_total{outcome=\"conflict\",source=\"single\",} 1.0")
+                .contains("appointments_bookings_total{outcome=\"bad_request\",source=\"single\",} 1.0")
+                .contains("appointments_bookings_total{outcome=\"ok\",source=\"batch\",} 0.0")
+                .containsPattern("http_server_requests_seconds_bucket\\{.*uri=\"/api/appointment\".*le=")
+                .containsPattern("http_server_requests_seconds_bucket\\{.*uri=\"/api/doctors/\\{id\\}\".*le=")
+                .containsPattern("spring_data_repository_invocations_seconds_bucket\\{.*method=\"save\".*repository=\"AppointmentRepository\".*le=")
+                .containsPattern("hikaricp_connections_active\\{pool=\"hospital-pool\",}");
+    }
+}
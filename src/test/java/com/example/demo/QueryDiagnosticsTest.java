@@ -0,0 +1,80 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.SchedulingService;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+        "diagnostics.enabled=true",
+        "diagnostics.slow-query-threshold=0ms",
+        "management.endpoints.web.exposure.include=querystats"})
+@ExtendWith(OutputCaptureExtension.class)
+class QueryDiagnosticsTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
+    private Doctor doctor;
+    private Patient patient;
+
+    @AfterEach
+    void tearDown(){
+        schedulingService.cancelAll();
+        schedulingService.removeRoom("Diagnostics room");
+        doctorRepository.delete(doctor);
+        patientRepository.delete(patient);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReportQueriesWithTheControllerMethodThatRanThem(CapturedOutput output){
+        doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        LocalDateTime startsAt = LocalDateTime.of(2032, 5, 3, 9, 0);
+        Appointment appointment = new Appointment(patient, doctor, new Room("Diagnostics room"), startsAt, startsAt.plusHours(1));
+        assertThat(restTemplate.postForEntity("/api/appointment", appointment, Void.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+        restTemplate.delete("/actuator/querystats");
+
+        assertThat(restTemplate.getForEntity("/api/appointments?doctorId=" + doctor.getId(), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<Map> response = restTemplate.getForEntity("/actuator/querystats", Map.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(((Number) response.getBody().get("queryExecutions")).longValue()).isEqualTo(1);
+
+        List<Map<String, Object>> queries = (List<Map<String, Object>>) response.getBody().get("queries");
+        assertThat(queries).hasSize(1);
+        assertThat(queries.get(0).get("executions")).isEqualTo(1);
+        assertThat(queries.get(0).get("rows")).isEqualTo(1);
+        assertThat((List<String>) queries.get(0).get("origins")).containsExactly("AppointmentController#getAllAppointments");
+
+        assertThat(output).contains("Slow query from AppointmentController#getAllAppointments");
+    }
+}
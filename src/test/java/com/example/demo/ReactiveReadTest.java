@@ -0,0 +1,177 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.controllers.Keyset;
+import com.example.demo.entities.*;
+import com.example.demo.reactive.ReactiveReadServer;
+import com.example.demo.repositories.*;
+import com.example.demo.services.SchedulingService;
+import com.jayway.jsonpath.JsonPath;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@SpringBootTest(properties = {"reactive.server.enabled=true", "reactive.server.port=0"})
+@AutoConfigureMockMvc
+class ReactiveReadTest {
+
+    @Autowired
+    private ReactiveReadServer server;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private WebTestClient client;
+    private Doctor doctor;
+    private Patient patient;
+
+    @BeforeEach
+    void setUp(){
+        client = WebTestClient.bindToServer().baseUrl("http://localhost:" + server.getPort()).build();
+        doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        LocalDateTime startsAt = LocalDateTime.of(2033, 5, 3, 9, 0);
+        for (int i = 0; i < 3; i++){
+            schedulingService.book(new Appointment(patient, doctor, new Room("Kiosk room"), startsAt.plusHours(i), startsAt.plusHours(i + 1)));
+        }
+    }
+
+    @AfterEach
+    void tearDown(){
+        schedulingService.cancelAll();
+        schedulingService.removeRoom("Kiosk room");
+        doctorRepository.delete(doctor);
+        patientRepository.delete(patient);
+    }
+
+    @Test
+    void shouldListTheDoctorsAppointmentsAsJson(){
+        client.get().uri("/api/appointments?doctorId={id}", doctor.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].startsAt").isEqualTo("09:00 03/05/2033")
+                .jsonPath("$[0].doctorLastName").isEqualTo("Amalia")
+                .jsonPath("$[0].patientId").isEqualTo(patient.getId())
+                .jsonPath("$[0].roomName").isEqualTo("Kiosk room");
+    }
+
+    @Test
+    void shouldStreamAPageAsNdjsonOnDemand(){
+        Flux<String> rows = client.get().uri("/api/appointments?room={room}&limit=2", "Kiosk room")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(String.class)
+                .getResponseBody();
+
+        StepVerifier.create(rows, 1)
+                .assertNext(line -> assertThat(line).contains("\"startsAt\":\"09:00 03/05/2033\""))
+                .thenRequest(1)
+                .assertNext(line -> assertThat(line).contains("\"startsAt\":\"10:00 03/05/2033\""))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldFilterByTimeWindowAndAnswerNoContentWhenEmpty(){
+        client.get().uri("/api/appointments?room={room}&from={from}&to={to}", "Kiosk room", "10:30 03/05/2033", "11:00 03/05/2033")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(1);
+
+        client.get().uri("/api/appointments?room={room}", "Empty room")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    void shouldListDoctorsPatientsAndRoomsWithKeyset(){
+        List<Doctor> doctors = client.get().uri("/api/doctors?after={after}&limit=1", doctor.getId() - 1)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Doctor.class).returnResult().getResponseBody();
+        assertThat(doctors).extracting(Doctor::getEmail).containsExactly("p.amalia@hospital.accwe");
+
+        client.get().uri("/api/patients?after={after}", patient.getId() - 1)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[0].firstName").isEqualTo("Jose Luis");
+
+        client.get().uri("/api/rooms?after={after}&limit=1", "Kiosk")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[0].roomName").isEqualTo("Kiosk room");
+    }
+
+    @Test
+    void shouldPageFilteredListingsLikeTheServletStack() throws Exception {
+        LocalDateTime startsAt = LocalDateTime.of(2033, 5, 4, 0, 0);
+        for (int i = 0; i < Keyset.DEFAULT_LIMIT; i++){
+            schedulingService.book(new Appointment(patient, doctor, new Room("Kiosk room"), startsAt.plusHours(i), startsAt.plusHours(i + 1)));
+        }
+
+        for (String query : new String[]{"/api/appointments?doctorId=" + doctor.getId(), "/api/appointments?room=Kiosk room&limit=20"}){
+            String reactive = client.get().uri(query)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(String.class).returnResult().getResponseBody();
+            String servlet = mockMvc.perform(get(query))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            assertThat(ids(reactive)).isEqualTo(ids(servlet));
+        }
+        EntityExchangeResult<String> firstPage = client.get().uri("/api/appointments?doctorId={id}", doctor.getId())
+                .exchange()
+                .expectBody(String.class).returnResult();
+        List<Long> ids = ids(firstPage.getResponseBody());
+        assertThat(ids).hasSize(Keyset.DEFAULT_LIMIT);
+        assertThat(firstPage.getResponseHeaders().getFirst(HttpHeaders.LINK))
+                .endsWith("/api/appointments?doctorId=" + doctor.getId() + "&after=" + ids.get(ids.size() - 1) + ">; rel=\"next\"");
+    }
+
+    private static List<Long> ids(String json){
+        return JsonPath.<List<Number>>read(json, "$[*].id").stream().map(Number::longValue).collect(Collectors.toList());
+    }
+
+    @Test
+    void shouldRejectInvalidParameters(){
+        client.get().uri("/api/appointments?limit=0").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/appointments?doctorId=abc").exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/appointments?from={from}&to={to}", "11:00 03/05/2033", "10:00 03/05/2033")
+                .exchange().expectStatus().isBadRequest();
+        client.get().uri("/api/doctors?limit=-1").exchange().expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo;
+
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.controllers.RecurringAppointmentController;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.entities.RecurringAppointment.Frequency;
+import com.example.demo.services.AppointmentQueryCache;
+import com.example.demo.services.BookingMetrics;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@WebMvcTest(RecurringAppointmentController.class)
+@Import({SchedulingService.class, AppointmentQueryCache.class, ResourceVersions.class, BookingMetrics.class})
+class RecurringAppointmentControllerUnitTest{
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2023, 4, 24, 19, 30);
+
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private RecurringAppointmentRepository recurringAppointmentRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+    private final Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+
+    @BeforeEach
+    void setUp(){
+        when(appointmentRepository.save(any(Appointment.class))).then(returnsFirstArg());
+        when(recurringAppointmentRepository.save(any(RecurringAppointment.class))).then(invocation -> {
+            RecurringAppointment series = invocation.getArgument(0);
+            series.setId(1);
+            return series;
+        });
+        schedulingService.seed();
+    }
+
+    @Test
+    void shouldCreateSeriesAndRejectBookingOnItsOccurrences() throws Exception {
+        RecurringAppointment series = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.WEEKLY, 1, MONDAY.plusWeeks(51), null);
+
+        mockMvc.perform(post("/api/recurring-appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(series)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.frequency").value("WEEKLY"))
+                .andExpect(jsonPath("$.lastFinishesAt").value("20:30 15/04/2024"));
+
+        LocalDateTime lastMonday = MONDAY.plusWeeks(51);
+        Appointment onTheLast = new Appointment(null, null, new Room("Dermatology"), lastMonday.plusMinutes(30), lastMonday.plusHours(2));
+        assertThat(schedulingService.conflicts(onTheLast)).isTrue();
+        assertThat(schedulingService.conflicts(new Appointment(null, null, new Room("Dermatology"), lastMonday.plusHours(1), lastMonday.plusHours(2)))).isFalse();
+
+        LocalDateTime sunday = MONDAY.plusWeeks(50).minusDays(1).minusMinutes(30);
+        RecurringAppointment clashing = new RecurringAppointment(null, null, new Room("Dermatology"), sunday, sunday.plusMinutes(45),
+                Frequency.DAILY, 1, null, 3);
+        mockMvc.perform(post("/api/recurring-appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(clashing)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldNotCreateInvalidSeries() throws Exception {
+        RecurringAppointment unbounded = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.DAILY, 1, null, null);
+        RecurringAppointment overlappingItself = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusDays(2),
+                Frequency.DAILY, 1, null, 5);
+        RecurringAppointment endingBeforeItStarts = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.WEEKLY, 1, MONDAY.minusDays(1), null);
+        RecurringAppointment negativeCount = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.WEEKLY, 1, null, -1);
+        RecurringAppointment negativeCountWithUntil = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.WEEKLY, 1, MONDAY.plusWeeks(4), -1);
+        RecurringAppointment tooManyOccurrences = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.DAILY, 1, null, RecurringAppointment.MAX_OCCURRENCES + 1);
+        RecurringAppointment tooManyUntil = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.DAILY, 1, MONDAY.plusYears(1000), null);
+        RecurringAppointment spanningTooManyYears = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.WEEKLY, 52, null, 10);
+
+        for (RecurringAppointment series : new RecurringAppointment[]{unbounded, overlappingItself, endingBeforeItStarts, negativeCount,
+                negativeCountWithUntil, tooManyOccurrences, tooManyUntil, spanningTooManyYears}){
+            mockMvc.perform(post("/api/recurring-appointment").contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(series)))
+                    .andExpect(status().isBadRequest());
+        }
+
+        // the last occurrence would lie past the LocalDateTime range, so it is built by hand
+        mockMvc.perform(post("/api/recurring-appointment").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"room\":{\"roomName\":\"Dermatology\"},\"startsAt\":\"19:30 24/04/2023\",\"finishesAt\":\"20:30 24/04/2023\","
+                        + "\"frequency\":\"WEEKLY\",\"interval\":1000,\"count\":2147483647}"))
+                .andExpect(status().isBadRequest());
+
+        // right at the caps
+        RecurringAppointment daily = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.DAILY, 1, null, RecurringAppointment.MAX_OCCURRENCES);
+        RecurringAppointment everyYear = new RecurringAppointment(null, null, new Room("Oncology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.WEEKLY, 52, null, 5);
+        for (RecurringAppointment series : new RecurringAppointment[]{daily, everyYear}){
+            mockMvc.perform(post("/api/recurring-appointment").contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(series)))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    @Test
+    void shouldExpandOccurrencesWithinWindowOnly() throws Exception {
+        RecurringAppointment series = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.DAILY, 2, null, 1000);
+        series.setId(1);
+
+        when(recurringAppointmentRepository.findById(1L)).thenReturn(Optional.of(series));
+        mockMvc.perform(get("/api/recurring-appointments/1/occurrences")
+                .param("from", "00:00 01/05/2023")
+                .param("to", "00:00 06/05/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].startsAt").value("19:30 02/05/2023"))
+                .andExpect(jsonPath("$[1].startsAt").value("19:30 04/05/2023"));
+        mockMvc.perform(get("/api/recurring-appointments/1/occurrences")
+                .param("from", "00:00 06/05/2023")
+                .param("to", "00:00 01/05/2023"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/recurring-appointments/2/occurrences")
+                .param("from", "00:00 01/05/2023")
+                .param("to", "00:00 06/05/2023"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldGetAndDeleteSeries() throws Exception {
+        mockMvc.perform(get("/api/recurring-appointments"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/recurring-appointments/1"))
+                .andExpect(status().isNotFound());
+
+        RecurringAppointment series = new RecurringAppointment(patient, doctor, new Room("Dermatology"), MONDAY, MONDAY.plusHours(1),
+                Frequency.WEEKLY, 2, null, 4);
+        series.setId(1);
+        when(recurringAppointmentRepository.findAll()).thenReturn(Collections.singletonList(series));
+        when(recurringAppointmentRepository.findById(1L)).thenReturn(Optional.of(series));
+        mockMvc.perform(get("/api/recurring-appointments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].interval").value(2));
+        mockMvc.perform(get("/api/recurring-appointments/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(4));
+
+        when(recurringAppointmentRepository.deleteOneById(anyLong())).thenReturn(0);
+        when(recurringAppointmentRepository.deleteOneById(1L)).thenReturn(1);
+        mockMvc.perform(delete("/api/recurring-appointments/1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/recurring-appointments/2"))
+                .andExpect(status().isNotFound());
+    }
+}
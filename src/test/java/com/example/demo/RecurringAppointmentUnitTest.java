@@ -0,0 +1,166 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entities.*;
+import com.example.demo.entities.RecurringAppointment.Frequency;
+import com.example.demo.services.Timeline;
+
+/**
+ * Checks the occurrence arithmetic of {@link RecurringAppointment} against a
+ * plain expansion of every occurrence, over seeded random series and windows.
+ */
+class RecurringAppointmentUnitTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+    private static final int ROUNDS = 5_000;
+
+    private final Random random = new Random(42);
+    private final Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+    private final Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+    private final Room room = new Room("Dermatology");
+
+    RecurringAppointmentUnitTest(){
+        doctor.setId(1);
+        patient.setId(1);
+    }
+
+    @Test
+    void shouldCountOccurrencesFromCountAndUntil(){
+        RecurringAppointment weekly = series(DAY, 60, Frequency.WEEKLY, 2, null, 5);
+        assertThat(weekly.getOccurrences()).isEqualTo(5);
+        assertThat(weekly.getLastFinishesAt()).isEqualTo(DAY.plusWeeks(8).plusHours(1));
+
+        // an occurrence starting exactly at until is included
+        weekly.setUntil(DAY.plusWeeks(4));
+        assertThat(weekly.getOccurrences()).isEqualTo(3);
+
+        weekly.setCount(null);
+        weekly.setUntil(DAY.plusWeeks(4).minusMinutes(1));
+        assertThat(weekly.getOccurrences()).isEqualTo(2);
+
+        weekly.setUntil(DAY.minusDays(1));
+        assertThat(weekly.getOccurrences()).isZero();
+        assertThat(weekly.getLastFinishesAt()).isNull();
+
+        weekly.setUntil(null);
+        assertThat(weekly.getOccurrences()).isZero();
+
+        weekly.setCount(-1);
+        assertThat(weekly.getOccurrences()).isZero();
+        assertThat(weekly.getLastFinishesAt()).isNull();
+    }
+
+    @Test
+    void shouldExpandOnlyTheOccurrencesWithinTheWindow(){
+        RecurringAppointment daily = series(DAY, 30, Frequency.DAILY, 1, null, 1000);
+
+        List<Appointment> occurrences = daily.occurrencesWithin(DAY.plusDays(10).plusMinutes(29), DAY.plusDays(12).plusMinutes(1));
+
+        assertThat(occurrences).extracting(Appointment::getStartsAt)
+                .containsExactly(DAY.plusDays(10), DAY.plusDays(11), DAY.plusDays(12));
+        assertThat(occurrences).allSatisfy(occurrence -> {
+            assertThat(occurrence.getId()).isZero();
+            assertThat(occurrence.getDoctor()).isSameAs(doctor);
+            assertThat(occurrence.getRoom()).isSameAs(room);
+        });
+        assertThat(daily.occurrencesWithin(DAY.plusDays(10).plusMinutes(30), DAY.plusDays(11))).isEmpty();
+        assertThat(daily.occurrencesWithin(DAY.plusYears(10), DAY.plusYears(11))).isEmpty();
+    }
+
+    @Test
+    void shouldMatchFullExpansion(){
+        for (int i = 0; i < ROUNDS; i++){
+            RecurringAppointment series = randomSeries();
+            LocalDateTime from = DAY.plusMinutes(random.nextInt(60 * 24 * 60) - 7 * 24 * 60);
+            LocalDateTime to = from.plusMinutes(1 + random.nextInt(10 * 24 * 60));
+
+            List<LocalDateTime> expected = new ArrayList<>();
+            for (long k = 0; k < series.getOccurrences(); k++){
+                Appointment occurrence = series.occurrence(k);
+                if (occurrence.getStartsAt().isBefore(to) && occurrence.getFinishesAt().isAfter(from)){
+                    expected.add(occurrence.getStartsAt());
+                }
+            }
+
+            assertThat(series.occurrencesWithin(from, to)).extracting(Appointment::getStartsAt).containsExactlyElementsOf(expected);
+            assertThat(series.occursWithin(Appointment.toStartMinute(from), Appointment.toEndMinute(to))).isEqualTo(!expected.isEmpty());
+        }
+    }
+
+    @Test
+    void shouldOverlapAnotherSeriesExactlyWhenTwoOccurrencesDo(){
+        for (int i = 0; i < ROUNDS; i++){
+            RecurringAppointment a = randomSeries();
+            RecurringAppointment b = randomSeries();
+
+            boolean expected = false;
+            for (long j = 0; j < a.getOccurrences() && !expected; j++){
+                for (long k = 0; k < b.getOccurrences() && !expected; k++){
+                    expected = a.occurrence(j).overlapsInTime(b.occurrence(k));
+                }
+            }
+
+            assertThat(a.overlaps(b)).isEqualTo(expected);
+            assertThat(b.overlaps(a)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void shouldOnlyOverlapAppointmentsSharingAResource(){
+        RecurringAppointment weekly = series(DAY, 60, Frequency.WEEKLY, 1, null, 10);
+        Doctor other = new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        other.setId(2);
+        LocalDateTime third = DAY.plusWeeks(3);
+
+        assertThat(weekly.overlaps(new Appointment(null, doctor, new Room("Oncology"), third.plusMinutes(59), third.plusHours(2)))).isTrue();
+        assertThat(weekly.overlaps(new Appointment(null, other, new Room("Oncology"), third, third.plusHours(1)))).isFalse();
+        assertThat(weekly.overlaps(new Appointment(null, other, room, third.plusHours(1), third.plusHours(2)))).isFalse();
+        assertThat(weekly.overlaps(new Appointment(null, other, room, third.plusDays(1), third.plusDays(1).plusHours(1)))).isFalse();
+        assertThat(weekly.overlaps(new Appointment(null, other, room, DAY.plusWeeks(10), DAY.plusWeeks(10).plusHours(1)))).isFalse();
+    }
+
+    @Test
+    void shouldCheckRecurringEntriesOfATimeline(){
+        Timeline timeline = new Timeline();
+        RecurringAppointment weekly = series(DAY, 60, Frequency.WEEKLY, 1, null, 52);
+        timeline.insertRecurring(weekly.getStartMinute(), weekly.getEndMinute(), weekly.getPeriodMinutes(), weekly.getOccurrences(), 7);
+        long tenthWeek = Appointment.toStartMinute(DAY.plusWeeks(10));
+
+        assertThat(timeline.isEmpty()).isFalse();
+        assertThat(timeline.overlaps(tenthWeek + 30, tenthWeek + 90)).isTrue();
+        assertThat(timeline.overlaps(tenthWeek + 60, tenthWeek + 24 * 60)).isFalse();
+        assertThat(timeline.overlaps(tenthWeek + 52 * 7 * 24 * 60, tenthWeek + 52 * 7 * 24 * 60 + 60)).isFalse();
+
+        List<Long> found = new ArrayList<>();
+        timeline.forEachRecurring(tenthWeek, tenthWeek + 1, found::add);
+        assertThat(found).containsExactly(7L);
+        assertThat(timeline.recurringIds()).containsExactly(7L);
+
+        assertThat(timeline.removeRecurring(7)).isTrue();
+        assertThat(timeline.removeRecurring(7)).isFalse();
+        assertThat(timeline.overlaps(tenthWeek, tenthWeek + 60)).isFalse();
+        assertThat(timeline.isEmpty()).isTrue();
+    }
+
+    private RecurringAppointment series(LocalDateTime startsAt, int minutes, Frequency frequency, int interval, LocalDateTime until, Integer count){
+        return new RecurringAppointment(patient, doctor, room, startsAt, startsAt.plusMinutes(minutes), frequency, interval, until, count);
+    }
+
+    private RecurringAppointment randomSeries(){
+        LocalDateTime startsAt = DAY.plusMinutes(random.nextInt(14 * 24 * 60));
+        Frequency frequency = random.nextBoolean() ? Frequency.DAILY : Frequency.WEEKLY;
+        int interval = 1 + random.nextInt(3);
+        int minutes = 1 + random.nextInt(Math.min(24 * 60 * frequency.getDays() * interval, 3 * 24 * 60));
+        Integer count = random.nextBoolean() ? 1 + random.nextInt(20) : null;
+        LocalDateTime until = count == null || random.nextBoolean() ? startsAt.plusDays(random.nextInt(60)) : null;
+        return series(startsAt, minutes, frequency, interval, until, count);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+class ResourceCacheTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp(){
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void shouldServeRepeatedDoctorLookupsFromCacheUntilDeleted(){
+        Doctor doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        cacheManager.getCache(CacheConfiguration.DOCTORS).clear();
+        double hits = hits(CacheConfiguration.DOCTORS);
+        double misses = misses(CacheConfiguration.DOCTORS);
+
+        for (int i = 0; i < 3; i++){
+            ResponseEntity<Doctor> response = restTemplate.getForEntity("/api/doctors/" + doctor.getId(), Doctor.class);
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody().getLastName()).isEqualTo("Amalia");
+        }
+
+        assertThat(misses(CacheConfiguration.DOCTORS) - misses).isEqualTo(1);
+        assertThat(hits(CacheConfiguration.DOCTORS) - hits).isEqualTo(2);
+
+        restTemplate.delete("/api/doctors/" + doctor.getId());
+
+        assertThat(restTemplate.getForEntity("/api/doctors/" + doctor.getId(), Doctor.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void shouldCacheCreatedRoomAndEvictItOnDelete(){
+        restTemplate.postForEntity("/api/room", new Room("Cached room"), Room.class);
+        double hits = hits(CacheConfiguration.ROOMS);
+
+        assertThat(restTemplate.getForEntity("/api/rooms/Cached room", Room.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(hits(CacheConfiguration.ROOMS) - hits).isEqualTo(1);
+
+        restTemplate.delete("/api/rooms/Cached room");
+
+        assertThat(cacheManager.getCache(CacheConfiguration.ROOMS).get("Cached room")).isNull();
+        assertThat(restTemplate.getForEntity("/api/rooms/Cached room", Room.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private double hits(String cache){
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", "hit").functionCounter().count();
+    }
+
+    private double misses(String cache){
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", "miss").functionCounter().count();
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import com.example.demo.dto.BookingResult;
+import com.example.demo.dto.FreeSlot;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.AppointmentQueryCache;
+import com.example.demo.services.BookingMetrics;
+import com.example.demo.services.ResourceVersions;
+import com.example.demo.services.SchedulingService;
+import com.sun.management.ThreadMXBean;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({SchedulingService.class, AppointmentQueryCache.class, ResourceVersions.class, BookingMetrics.class})
+class SchedulingServiceJpaUnitTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private SchedulingService schedulingService;
+
+    @Autowired
+    AppointmentRepository repoAppointments;
+
+    @Autowired
+    DoctorRepository repoDoctors;
+
+    @Autowired
+    PatientRepository repoPatients;
+
+    @Autowired
+    RoomRepository repoRooms;
+
+    @Autowired
+    RecurringAppointmentRepository repoRecurring;
+
+    @Test
+    void should_persist_accepted_items_of_a_batch(){
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        entityManager.flush();
+        entityManager.clear();
+
+        Doctor detachedDoctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        detachedDoctor.setId(doctor.getId());
+        Patient detachedPatient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        detachedPatient.setId(patient.getId());
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        // the same new room arrives as a separate object on every item
+        List<Appointment> batch = Arrays.asList(
+                new Appointment(detachedPatient, detachedDoctor, new Room("Oncology"), startsAt, startsAt.plusHours(1)),
+                new Appointment(detachedPatient, detachedDoctor, new Room("Oncology"), startsAt.plusMinutes(30), startsAt.plusHours(2)),
+                new Appointment(detachedPatient, detachedDoctor, new Room("Oncology"), startsAt.plusHours(1), startsAt.plusHours(2)));
+
+        List<BookingResult> results = schedulingService.bookAll(batch);
+        entityManager.flush();
+
+        assertThat(results).extracting(BookingResult::isAccepted).containsExactly(true, false, true);
+        assertThat(repoAppointments.findAll()).extracting(Appointment::getId)
+                .containsExactlyInAnyOrder(results.get(0).getId(), results.get(2).getId());
+        assertThat(repoDoctors.findAll()).hasSize(1);
+        assertThat(repoRooms.findAll()).hasSize(1);
+    }
+
+    @Test
+    void should_remove_all_doctors_and_their_appointments_in_bulk(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Room room = entityManager.persist(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        for (int i = 0; i < 20; i++){
+            Doctor doctor = entityManager.persist(new Doctor("Doctor", "Number " + i, 40, "doctor" + i + "@hospital.accwe"));
+            entityManager.persist(new Appointment(patient, doctor, room, startsAt.plusHours(i), startsAt.plusHours(i + 1)));
+        }
+        Appointment withoutDoctor = entityManager.persist(new Appointment(patient, null, room, startsAt.minusHours(1), startsAt));
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        schedulingService.removeAllDoctors();
+
+        // one delete each for the appointments, the series and the doctors, nothing loaded
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        assertThat(repoDoctors.findAll()).isEmpty();
+        assertThat(repoAppointments.findAll()).extracting(Appointment::getId).containsExactly(withoutDoctor.getId());
+        assertThat(repoPatients.findAll()).hasSize(1);
+        assertThat(repoRooms.findAll()).hasSize(1);
+    }
+
+    @Test
+    void should_remove_all_rooms_after_their_appointments(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Room room = entityManager.persist(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1)));
+        entityManager.flush();
+        entityManager.clear();
+
+        schedulingService.removeAllRooms();
+
+        assertThat(repoRooms.findAll()).isEmpty();
+        assertThat(repoAppointments.findAll()).isEmpty();
+        assertThat(repoDoctors.findAll()).hasSize(1);
+    }
+
+    @Test
+    void should_cascade_remove_all_where_remove_by_id_is_rejected(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Patient other = entityManager.persist(new Patient("Paula", "Olaya", 35, "p.olaya@email.com"));
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Room room = entityManager.persist(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1)));
+        entityManager.persist(new RecurringAppointment(other, doctor, room, startsAt.plusDays(1), startsAt.plusDays(1).plusHours(1),
+                RecurringAppointment.Frequency.WEEKLY, 1, null, 10));
+        Appointment withoutPatient = entityManager.persist(new Appointment(null, doctor, room, startsAt.minusHours(1), startsAt));
+        entityManager.flush();
+        entityManager.clear();
+        schedulingService.seed();
+
+        // one by one, booked patients are refused
+        assertThatThrownBy(() -> schedulingService.removePatient(patient.getId())).isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> schedulingService.removePatient(other.getId())).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(repoPatients.findAll()).hasSize(2);
+
+        // all at once, their appointments and series go with them
+        schedulingService.removeAllPatients();
+
+        assertThat(repoPatients.findAll()).isEmpty();
+        assertThat(repoAppointments.findAll()).extracting(Appointment::getId).containsExactly(withoutPatient.getId());
+        assertThat(repoRecurring.findAll()).isEmpty();
+        assertThat(repoDoctors.findAll()).hasSize(1);
+        assertThat(repoRooms.findAll()).hasSize(1);
+
+        // and the index forgets them, so their slots are free again
+        assertThat(schedulingService.conflicts(new Appointment(null, doctor, room, startsAt, startsAt.plusHours(1)))).isFalse();
+        assertThat(schedulingService.conflicts(new Appointment(null, doctor, room, startsAt.plusDays(8), startsAt.plusDays(8).plusHours(1)))).isFalse();
+    }
+
+    @Test
+    void should_delete_appointment_by_id_with_one_statement(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Room room = entityManager.persist(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment appointment = entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1)));
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertThat(schedulingService.cancel(appointment.getId())).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThat(schedulingService.cancel(appointment.getId())).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        assertThat(repoAppointments.findAll()).isEmpty();
+        assertThat(repoDoctors.findAll()).hasSize(1);
+        assertThat(repoRooms.findAll()).hasSize(1);
+    }
+
+    @Test
+    void should_delete_doctor_patient_and_room_by_id_once_unreferenced(){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Doctor doctor2 = entityManager.persist(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+        Room room = entityManager.persist(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment booked = entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1)));
+        Appointment kept = entityManager.persist(new Appointment(null, doctor2, null, startsAt, startsAt.plusHours(1)));
+        entityManager.flush();
+        entityManager.clear();
+        schedulingService.seed();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // the foreign keys reject the delete while the appointment is booked
+        assertThatThrownBy(() -> schedulingService.removeDoctor(doctor.getId())).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThatThrownBy(() -> schedulingService.removePatient(patient.getId())).isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> schedulingService.removeRoom(room.getRoomName())).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(repoAppointments.findAll()).extracting(Appointment::getId).containsExactlyInAnyOrder(booked.getId(), kept.getId());
+
+        assertThat(schedulingService.cancel(booked.getId())).isTrue();
+        statistics.clear();
+
+        assertThat(schedulingService.removeDoctor(doctor.getId())).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(schedulingService.removeDoctor(doctor.getId())).isFalse();
+        assertThat(schedulingService.removePatient(patient.getId())).isTrue();
+        assertThat(schedulingService.removeRoom(room.getRoomName())).isTrue();
+        assertThat(schedulingService.removeRoom(room.getRoomName())).isFalse();
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        assertThat(repoDoctors.findAll()).extracting(Doctor::getId).containsExactly(doctor2.getId());
+        assertThat(repoAppointments.findAll()).extracting(Appointment::getId).containsExactly(kept.getId());
+        assertThat(repoPatients.findAll()).isEmpty();
+        assertThat(repoRooms.findAll()).isEmpty();
+    }
+
+    @Test
+    void should_check_conflicts_without_allocating(){
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Room room = entityManager.persist(new Room("Dermatology"));
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        for (int i = 0; i < 100; i++){
+            entityManager.persist(new Appointment(patient, doctor, room, startsAt.plusHours(i), startsAt.plusHours(i).plusMinutes(30)));
+        }
+        // series are checked on the same timelines
+        entityManager.persist(new RecurringAppointment(null, doctor, entityManager.persist(new Room("Oncology")),
+                startsAt.minusMinutes(50), startsAt.minusMinutes(10), RecurringAppointment.Frequency.DAILY, 1, null, 30));
+        entityManager.flush();
+        schedulingService.seed();
+
+        Appointment[] probes = new Appointment[64];
+        for (int i = 0; i < probes.length; i++){
+            LocalDateTime probeStart = startsAt.plusMinutes(45L * i);
+            probes[i] = new Appointment(patient, doctor, room, probeStart, probeStart.plusMinutes(20));
+        }
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int checks = 500_000;
+        int conflicts = 0;
+        for (int i = 0; i < checks; i++){
+            conflicts += schedulingService.conflicts(probes[i & 63]) ? 1 : 0;
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < checks; i++){
+            conflicts += schedulingService.conflicts(probes[i & 63]) ? 1 : 0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertThat(conflicts).isPositive().isLessThan(2 * checks);
+        assertThat(allocated).isLessThan(checks);
+    }
+
+    @Test
+    void should_never_double_book_a_doctor_patient_or_room(){
+        Doctor[] doctors = new Doctor[3];
+        Patient[] patients = new Patient[3];
+        Room[] rooms = new Room[3];
+        for (int i = 0; i < 3; i++){
+            doctors[i] = entityManager.persist(new Doctor("Doctor", "Number " + i, 40, "doctor" + i + "@hospital.accwe"));
+            patients[i] = entityManager.persist(new Patient("Patient", "Number " + i, 30, "patient" + i + "@email.com"));
+            rooms[i] = entityManager.persist(new Room("Room " + i));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Random random = new Random(7);
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 8, 0);
+        List<Appointment> singles = new ArrayList<>();
+        List<Appointment> batch = new ArrayList<>();
+        for (int i = 0; i < 300; i++){
+            LocalDateTime startsAt = day.plusMinutes(15L * random.nextInt(40));
+            Appointment appointment = new Appointment(detached(patients[random.nextInt(3)]), detached(doctors[random.nextInt(3)]),
+                    new Room(rooms[random.nextInt(3)].getRoomName()), startsAt, startsAt.plusMinutes(15L * (1 + random.nextInt(6))));
+            (i % 2 == 0 ? singles : batch).add(appointment);
+        }
+
+        List<Appointment> rejected = new ArrayList<>();
+        for (Appointment appointment : singles){
+            if (!schedulingService.book(appointment).isPresent()){
+                rejected.add(appointment);
+            }
+        }
+        List<BookingResult> results = schedulingService.bookAll(batch);
+        for (BookingResult result : results){
+            if (!result.isAccepted()){
+                rejected.add(batch.get(result.getIndex()));
+            }
+        }
+        entityManager.flush();
+
+        List<Appointment> booked = repoAppointments.findAll();
+        assertThat(booked).hasSize(singles.size() + batch.size() - rejected.size());
+        for (int i = 0; i < booked.size(); i++){
+            for (int j = i + 1; j < booked.size(); j++){
+                assertThat(booked.get(i).overlaps(booked.get(j)))
+                        .as("appointments %d and %d are double-booked", booked.get(i).getId(), booked.get(j).getId())
+                        .isFalse();
+            }
+        }
+        // nothing was turned away without a reason
+        for (Appointment appointment : rejected){
+            assertThat(booked).anyMatch(appointment::overlaps);
+        }
+    }
+
+    @Test
+    void should_check_bookings_against_recurring_series(){
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Doctor doctor2 = entityManager.persist(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Patient patient2 = entityManager.persist(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"));
+        entityManager.flush();
+        entityManager.clear();
+
+        // every Monday at 9:00 for a year
+        LocalDateTime monday = LocalDateTime.of(2023, 4, 24, 9, 0);
+        RecurringAppointment weekly = new RecurringAppointment(detached(patient), detached(doctor), new Room("Dermatology"),
+                monday, monday.plusHours(1), RecurringAppointment.Frequency.WEEKLY, 1, null, 52);
+        assertThat(schedulingService.bookSeries(weekly)).isPresent();
+        entityManager.flush();
+
+        LocalDateTime thirtiethMonday = monday.plusWeeks(30);
+        Appointment sameDoctor = new Appointment(detached(patient2), detached(doctor), new Room("Oncology"),
+                thirtiethMonday.plusMinutes(30), thirtiethMonday.plusMinutes(90));
+        assertThat(schedulingService.conflicts(sameDoctor)).isTrue();
+        assertThat(schedulingService.findConflicts(sameDoctor)).extracting(Appointment::getStartsAt).containsExactly(thirtiethMonday);
+        assertThat(schedulingService.book(sameDoctor)).isEmpty();
+
+        Appointment nextHour = new Appointment(detached(patient2), detached(doctor), new Room("Dermatology"),
+                thirtiethMonday.plusHours(1), thirtiethMonday.plusHours(2));
+        Appointment afterTheLast = new Appointment(detached(patient2), detached(doctor), new Room("Dermatology"),
+                monday.plusWeeks(52), monday.plusWeeks(52).plusHours(1));
+        assertThat(schedulingService.book(nextHour)).isPresent();
+        assertThat(schedulingService.book(afterTheLast)).isPresent();
+        entityManager.flush();
+
+        // another series is checked against both the bookings and the occurrences of the first
+        RecurringAppointment everyOtherDay = new RecurringAppointment(detached(patient2), detached(doctor2), new Room("Oncology"),
+                monday.plusDays(2).plusHours(1), monday.plusDays(2).plusHours(2), RecurringAppointment.Frequency.DAILY, 2, monday.plusWeeks(60), null);
+        assertThat(schedulingService.bookSeries(everyOtherDay)).isEmpty();
+        everyOtherDay.setPatient(null);
+        assertThat(schedulingService.bookSeries(everyOtherDay)).isPresent();
+        RecurringAppointment thursdays = new RecurringAppointment(null, detached(doctor2), new Room("Dermatology"),
+                monday.plusDays(3).plusMinutes(30), monday.plusDays(3).plusMinutes(90), RecurringAppointment.Frequency.WEEKLY, 1, null, 10);
+        assertThat(schedulingService.bookSeries(thursdays)).isEmpty();
+        entityManager.flush();
+
+        assertThat(schedulingService.findFreeSlots(doctor.getId(), null, thirtiethMonday.minusHours(1), thirtiethMonday.plusHours(3),
+                Duration.ofMinutes(30), 10)).extracting(FreeSlot::getStartsAt)
+                .containsExactly(thirtiethMonday.minusHours(1), thirtiethMonday.plusHours(2));
+
+        // the series survive a restart and keep their doctor from being removed
+        Appointment onlyTheDoctor = new Appointment(null, detached(doctor), new Room("Radiology"), thirtiethMonday, thirtiethMonday.plusHours(1));
+        schedulingService.seed();
+        assertThat(schedulingService.conflicts(onlyTheDoctor)).isTrue();
+        assertThatThrownBy(() -> schedulingService.removeDoctor(doctor.getId())).isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(schedulingService.conflicts(onlyTheDoctor)).isTrue();
+        assertThat(schedulingService.cancelSeries(weekly.getId())).isTrue();
+        assertThat(schedulingService.conflicts(onlyTheDoctor)).isFalse();
+        assertThat(schedulingService.cancelSeries(everyOtherDay.getId())).isTrue();
+        assertThat(schedulingService.cancelSeries(everyOtherDay.getId())).isFalse();
+        assertThat(repoRecurring.findAll()).isEmpty();
+    }
+
+    private static Doctor detached(Doctor doctor){
+        Doctor copy = new Doctor(doctor.getFirstName(), doctor.getLastName(), doctor.getAge(), doctor.getEmail());
+        copy.setId(doctor.getId());
+        return copy;
+    }
+
+    private static Patient detached(Patient patient){
+        Patient copy = new Patient(patient.getFirstName(), patient.getLastName(), patient.getAge(), patient.getEmail());
+        copy.setId(patient.getId());
+        return copy;
+    }
+}